@@ -78,7 +78,9 @@ public abstract class CtrlGenericData {
     {
         createDirectoryStructure(id);
         File file = new File(buildPath(id));
-        new ObjectOutputStream(new FileOutputStream(file)).writeObject(object);
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(object);
+        }
     }
 
     /**
@@ -2,18 +2,37 @@ package domain.controllers;
 
 import data.*;
 import domain.game.*;
+import domain.logic.BatchGenerator;
+import domain.logic.DifficultyRater;
 import domain.logic.Generator;
+import domain.logic.GeneratorMetrics;
+import domain.logic.HidatoSolver;
+import domain.logic.MeetInTheMiddleSolver;
+import domain.logic.HintEngine;
+import domain.logic.SolutionCache;
+import domain.logic.SolveResult;
+import domain.logic.SolveToken;
+import domain.logic.SolverMetrics;
+import domain.logic.SolverStats;
+import domain.logic.PortfolioSolver;
+import domain.logic.ProblemPool;
+import domain.logic.PropagationSolver;
 import domain.logic.Solver;
 import domain.logic.Validator;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -68,6 +87,30 @@ public class CtrlDomain {
      */
     private ProblemCollection problemCollection;
 
+    /**
+     * Number of threads used by the {@link Solver} to check imported problems
+     */
+    private int solverParallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Time in milliseconds the {@link Solver} may spend on a hint or a solution before giving up
+     */
+    private long solverTimeoutMillis = 10000;
+
+    /**
+     * Keeps the last solution of the attempt being played, so hints that agree with it are answered without solving
+     * the board again
+     */
+    private HintEngine hintEngine = new HintEngine(new PortfolioSolver());
+
+    /**
+     * Solver backend used for hints, solutions and imported problems: "Search" for the {@link Solver},
+     * "Propagation" for the {@link PropagationSolver} or "Portfolio" for the {@link PortfolioSolver}. The portfolio is
+     * the default: the {@link Solver} alone can take seconds on boards of 20x20 that the propagation solves in a few
+     * milliseconds, as the SolverBenchmark shows.
+     */
+    private String solverBackend = "Portfolio";
+
     /**
      * Constructor for {@link CtrlDomain} initialising all controller attributes and loading all problems
      * (using {@link #loadAllProblems()}).
@@ -277,8 +320,9 @@ public class CtrlDomain {
      * @param type the type attribute of the problem being solved
      * @param lastNumber the last number added to the solution by the player
      * @return The x and y position of the following number of a solution if solvable, empty string otherwise
+     * @throws SolverTimeoutException The solver could not decide in time whether the solution is solvable
      */
-    public String[] getHint(String[][] solution, String adjacency, int columns, int rows, String type, int lastNumber) {
+    public String[] getHint(String[][] solution, String adjacency, int columns, int rows, String type, int lastNumber) throws SolverTimeoutException {
         Problem p;
         boolean adj = false;
         if (adjacency.equals("CA")){
@@ -293,24 +337,19 @@ public class CtrlDomain {
         else{
             p = new HexagonProblem(solution, rows, columns, Difficulty.Medium, "hint");
         }
-        Solver s =  new Solver();
-        String map[][] = s.solve(p);
-        if(map == null){
+        SolveResult result = hintEngine.solve(p, new SolveToken(solverTimeoutMillis));
+        if(result.isStopped()){
+            throw new SolverTimeoutException();
+        }
+        int position[] = result.isSolved() ? hintEngine.positionOf(lastNumber + 1) : null;
+        if(position == null){
             return new String[0];
         }
         else {
-            for (int i = 0; i < rows; i++) {
-                for (int j = 0; j < columns; j++) {
-                    if (map[i][j].equals(String.valueOf((lastNumber + 1)))) {
-                        String info[] = new String[2];
-                        info[0] = String.valueOf(i);
-                        info[1] = String.valueOf(j);
-                        return info;
-                    }
-                }
-            }
-            //Should never be here
-            return new String[0];
+            String info[] = new String[2];
+            info[0] = String.valueOf(position[0]);
+            info[1] = String.valueOf(position[1]);
+            return info;
         }
     }
 
@@ -361,8 +400,9 @@ public class CtrlDomain {
      * @param rows number of rows of the problem's map
      * @param type the type of the problem
      * @return the solution of the started attempt
+     * @throws SolverTimeoutException The solver could not decide in time whether the attempt is solvable
      */
-    public String[][] getSolution(String[][] solution, String adjacency, int columns, int rows, String type) {
+    public String[][] getSolution(String[][] solution, String adjacency, int columns, int rows, String type) throws SolverTimeoutException {
         Problem p;
         boolean adj = false;
         if (adjacency.equals("CA")){
@@ -378,8 +418,11 @@ public class CtrlDomain {
             p = new HexagonProblem(solution, rows, columns, Difficulty.Medium, "hint");
         }
 
-        Solver s =  new Solver();
-        String map[][] = s.solve(p);
+        SolveResult result = hintEngine.solve(p, new SolveToken(solverTimeoutMillis));
+        if(result.isStopped()){
+            throw new SolverTimeoutException();
+        }
+        String map[][] = result.getSolution();
         if(map == null){
             return new String[0][0];
         }
@@ -394,10 +437,15 @@ public class CtrlDomain {
     public class ProblemExistsException extends Exception{};
 
     /**
-     * An exception to flag that a problem is not valid
+     * An exception to flag that a problem is not valid, because it has no solution or more than one
      */
     public class ProblemNotValidException extends Exception{};
 
+    /**
+     * An exception to flag that the {@link Solver} gave up before it could decide whether a problem has a solution
+     */
+    public class SolverTimeoutException extends Exception{};
+
     /**
      * Reads a Hidato problem from a file and parses it into a {@link Problem} instance. The format of the file is:
      *
@@ -411,15 +459,18 @@ public class CtrlDomain {
      * Q=Square, T=Triangle, H=Hexagon
      * C=Faces, CA=Faces and Edges
      *
-     * Various checks are performed and the {@link Difficulty} is determined with {@link Problem#determineDifficulty(String[][])}.
+     * Various checks are performed and the {@link Difficulty} is measured with {@link DifficultyRater#rated(Problem)}.
      *
      * @param path          The path to a text file containing an Hidato in the format above.
      * @return An instance of {@link Problem} corresponding to the file passed.
      * @throws FileNotFoundException    Thrown when the passed path does not link to a file.
      * @throws IOException              Can be thrown by {@link BufferedReader#readLine()}
      * @throws ParseException           The file does not fulfil the format requirements.
+     * @throws ProblemNotValidException The problem does not have exactly one solution.
+     * @throws SolverTimeoutException   The solver could not decide in time whether the problem has exactly one
+     *                                  solution.
      */
-    public String[] loadProblemFromPath(String path) throws FileNotFoundException, IOException, ParseException, ProblemExistsException, ProblemNotValidException {
+    public String[] loadProblemFromPath(String path) throws FileNotFoundException, IOException, ParseException, ProblemExistsException, ProblemNotValidException, SolverTimeoutException {
         Problem p;
         String creatorName = loggedPlayer.getName();
 
@@ -466,8 +517,12 @@ public class CtrlDomain {
             throw new ParseException("Invalid argument passed", 0);
         }
 
-        Solver s = new Solver();
-        if (s.solve(p) == null) throw new ProblemNotValidException();
+        HidatoSolver s = newSolver(solverParallelism);
+        int solutions = s.countSolutions(p, 2, new SolveToken(solverTimeoutMillis));
+        if (solutions < 0) throw new SolverTimeoutException();
+        if (solutions != 1) throw new ProblemNotValidException();
+        p = DifficultyRater.rated(p);
+        SolutionCache.getSolutionCache().put(p, s.printProblem());
         for (Problem item :
                 problemCollection) {
             if (item.getId() == p.getId()) {
@@ -480,7 +535,151 @@ public class CtrlDomain {
     }
 
     /**
-     * Generates a new {@link Problem} with the parameters passed.
+     * Sets the number of threads used by the {@link Solver} to check the problems loaded with
+     * {@link #loadProblemFromPath(String)}
+     *
+     * @param parallelism   Number of threads, 1 for a sequential search
+     * @throws IllegalArgumentException Is thrown if the parallelism is lower than 1
+     */
+    public void setSolverParallelism(int parallelism) throws IllegalArgumentException {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1");
+        solverParallelism = parallelism;
+    }
+
+    /**
+     * Sets the time the {@link Solver} may spend on a hint, a solution, a personalized problem or the check of a
+     * loaded problem before {@link SolverTimeoutException} is thrown
+     *
+     * @param timeoutMillis Time in milliseconds
+     * @throws IllegalArgumentException Is thrown if the time is negative
+     */
+    public void setSolverTimeout(long timeoutMillis) throws IllegalArgumentException {
+        if (timeoutMillis < 0) throw new IllegalArgumentException("Timeout can not be negative");
+        solverTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Chooses the solver backend used for hints, solutions and imported problems
+     *
+     * @param backend   "Search" for the backtracking {@link Solver}, "Propagation" for the {@link PropagationSolver},
+     *                  "Portfolio" to race several strategies with the {@link PortfolioSolver} or "MeetInTheMiddle"
+     *                  for the {@link MeetInTheMiddleSolver}
+     * @throws IllegalArgumentException Is thrown if the backend is not recognised
+     */
+    public void setSolverBackend(String backend) throws IllegalArgumentException {
+        if (!backend.equals("Search") && !backend.equals("Propagation") && !backend.equals("Portfolio")
+                && !backend.equals("MeetInTheMiddle"))
+            throw new IllegalArgumentException("Unrecognised solver backend");
+        solverBackend = backend;
+        hintEngine = new HintEngine(newSolver(1));
+    }
+
+    /**
+     * Creates a solver of the chosen backend
+     *
+     * @param parallelism   Number of threads used by the {@link Solver}, ignored by the other backends
+     * @return A new solver
+     */
+    private HidatoSolver newSolver(int parallelism) {
+        if (solverBackend.equals("Propagation")) return new PropagationSolver();
+        if (solverBackend.equals("Portfolio")) return new PortfolioSolver();
+        if (solverBackend.equals("MeetInTheMiddle")) return new MeetInTheMiddleSolver();
+        return new Solver(parallelism);
+    }
+
+    /**
+     * Chooses how the generator fills the board with the path of a new problem
+     *
+     * @param engine    "RandomWalk" for the original random walk with backtracking, "Warnsdorff" for the walk that
+     *                  always moves to the cell with the fewest free neighbours and repairs the path when it gets stuck
+     * @throws IllegalArgumentException Is thrown if the engine is not recognised
+     */
+    public void setGeneratorFillEngine(String engine) throws IllegalArgumentException {
+        if (engine.equals("RandomWalk")) Generator.setFillEngine(Generator.FillEngine.RANDOM_WALK);
+        else if (engine.equals("Warnsdorff")) Generator.setFillEngine(Generator.FillEngine.WARNSDORFF);
+        else throw new IllegalArgumentException("Unrecognised fill engine");
+    }
+
+    /**
+     * Returns how many races every strategy of the {@link PortfolioSolver} has won
+     *
+     * @return The number of wins of every strategy, by the name of the strategy
+     */
+    public Map<String, Long> getSolverPortfolioWins() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (PortfolioSolver.Strategy strategy : PortfolioSolver.Strategy.values()) {
+            result.put(strategy.name(), PortfolioSolver.getWins(strategy));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the totals of the searches done by the {@link Solver}, for all of them together ("All") and for every
+     * puzzle class ({@link Type} and {@link Difficulty} of the problem, for example "Square/Hard")
+     *
+     * @return The totals of every group of searches, by the name of the group and of the total
+     */
+    public Map<String, Map<String, Long>> getSolverMetrics() {
+        SolverMetrics metrics = SolverMetrics.getSolverMetrics();
+        Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+        result.put("All", toMap(metrics.getTotal()));
+        for (String puzzleClass : metrics.getPuzzleClasses()) {
+            SolverMetrics.Summary summary = metrics.getSummary(puzzleClass);
+            if (summary != null) result.put(puzzleClass, toMap(summary));
+        }
+        return result;
+    }
+
+    /**
+     * Converts the totals of a group of searches into a map
+     *
+     * @param summary   The totals of a group of searches
+     * @return The totals by name
+     */
+    private static Map<String, Long> toMap(SolverMetrics.Summary summary) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("Searches", summary.getSearches());
+        result.put("Stopped", summary.getStopped());
+        result.put("Nodes", summary.getNodes());
+        result.put("Backtracks", summary.getBacktracks());
+        for (SolverStats.Prune rule : SolverStats.Prune.values()) {
+            result.put("Prunes " + rule.name(), summary.getPrunes(rule));
+        }
+        result.put("MaxDepth", (long) summary.getMaxDepth());
+        result.put("MeanNanos", summary.getMeanNanos());
+        result.put("MaxNanos", summary.getMaxNanos());
+        return result;
+    }
+
+    /**
+     * Sets the number of solutions kept by the {@link SolutionCache}
+     *
+     * @param capacity  Number of solutions, 0 to disable the cache
+     * @throws IllegalArgumentException Is thrown if the capacity is negative
+     */
+    public void setSolutionCacheCapacity(int capacity) throws IllegalArgumentException {
+        SolutionCache.getSolutionCache().setCapacity(capacity);
+    }
+
+    /**
+     * Returns the metrics of the {@link SolutionCache}
+     *
+     * @return "Hits" and "Misses", the number of lookups that found a solution and that did not, followed by "Size",
+     *         the number of solutions kept, and "Capacity", the most it can keep
+     */
+    public Map<String, Long> getSolutionCacheMetrics() {
+        SolutionCache cache = SolutionCache.getSolutionCache();
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("Hits", cache.getHits());
+        metrics.put("Misses", cache.getMisses());
+        metrics.put("Size", (long) cache.size());
+        metrics.put("Capacity", (long) cache.getCapacity());
+        return metrics;
+    }
+
+    /**
+     * Generates a new {@link Problem} with the parameters passed. The problem is taken from the {@link ProblemPool}
+     * if it has one ready, so only the first request of every kind waits for the {@link Generator}.
      *
      * @param type              A {@code String} corresponding with the name of a {@link Type}
      * @param numRows           The number of rows the new game should have
@@ -492,27 +691,189 @@ public class CtrlDomain {
      *          {@link #displayableProblemInfo(Problem)}, or an empty {@code String} array if adding the new Problem to
      *          {@link #problemCollection} failed.
      * @throws IllegalArgumentException Is thrown if one of the argumets is in the wrong format. Should be caught.
-     * @see Generator#generate(Type, int, int, Difficulty, String, boolean)
+     * @see ProblemPool#take(Type, int, int, Difficulty, boolean, String)
      */
     public String[] generateProblem(String type, int numRows, int numColumns, String difficulty, boolean cornerAdjacent)
             throws IllegalArgumentException, IOException {
+        Problem p = ProblemPool.getProblemPool().take(parseType(type), numRows, numColumns,
+                parseDifficulty(difficulty), cornerAdjacent, loggedPlayer.getName());
+        return addGeneratedProblem(p);
+    }
+
+    /**
+     * Generates a new {@link Problem} with the parameters passed, taking every random choice from the passed seed. The
+     * same parameters and seed always give the same map, so a generation can be reproduced.
+     *
+     * @param type              A {@code String} corresponding with the name of a {@link Type}
+     * @param numRows           The number of rows the new game should have
+     * @param numColumns        The number of columns the new game should have
+     * @param difficulty        A {@code String} corresponding with the name of a {@link Difficulty}
+     * @param cornerAdjacent    Whether fields sharing a corner should be counted as neighbours or only those sharing a
+     *                          face (not relevant for {@link HexagonProblem}s).
+     * @param seed              The seed of the random choices of the generator
+     * @return  The displayable information of the generated {@link Problem} as generated by
+     *          {@link #displayableProblemInfo(Problem)}, or an empty {@code String} array if adding the new Problem to
+     *          {@link #problemCollection} failed.
+     * @throws IllegalArgumentException Is thrown if one of the argumets is in the wrong format. Should be caught.
+     * @see Generator#generate(Type, int, int, Difficulty, String, boolean, long)
+     */
+    public String[] generateProblem(String type, int numRows, int numColumns, String difficulty, boolean cornerAdjacent,
+                                    long seed) throws IllegalArgumentException, IOException {
+        Problem p = Generator.generate(parseType(type), numRows, numColumns, parseDifficulty(difficulty),
+                loggedPlayer.getName(), cornerAdjacent, seed);
+        return addGeneratedProblem(p);
+    }
+
+    /**
+     * Stores a generated {@link Problem} and adds it to {@link #problemCollection}
+     *
+     * @param p The generated problem
+     * @return  The displayable information of the problem as generated by {@link #displayableProblemInfo(Problem)},
+     *          or an empty {@code String} array if adding it to {@link #problemCollection} failed.
+     * @throws IOException Could not write the Problem file
+     */
+    private String[] addGeneratedProblem(Problem p) throws IOException {
+        ctrlProblemData.save(Problem.idAsHex(p.getId()), p);
+        if (problemCollection.add(p)) {
+            return displayableProblemInfo(p);
+        }
+        return new String[0];
+    }
+
+    /**
+     * Parses the name of a {@link Type}
+     *
+     * @param type  A {@code String} corresponding with the name of a {@link Type}
+     * @return The type
+     * @throws IllegalArgumentException Is thrown if there is no type with that name
+     */
+    private static Type parseType(String type) throws IllegalArgumentException {
         try {
-            Type.valueOf(type);
+            return Type.valueOf(type);
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Unrecognised type", e);
         }
+    }
+
+    /**
+     * Parses the name of a {@link Difficulty}
+     *
+     * @param difficulty    A {@code String} corresponding with the name of a {@link Difficulty}
+     * @return The difficulty
+     * @throws IllegalArgumentException Is thrown if there is no difficulty with that name
+     */
+    private static Difficulty parseDifficulty(String difficulty) throws IllegalArgumentException {
         try {
-            Difficulty.valueOf(difficulty);
+            return Difficulty.valueOf(difficulty);
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Unrecognised difficulty", e);
         }
-        Problem p = Generator.generate(Type.valueOf(type), numRows, numColumns, Difficulty.valueOf(difficulty),
-                loggedPlayer.getName(), cornerAdjacent);
-                ctrlProblemData.save(Problem.idAsHex(p.getId()), p);
-        if (problemCollection.add(p)) {
-            return displayableProblemInfo(p);
+    }
+
+    /**
+     * Sets how many ready problems the {@link ProblemPool} keeps of every kind that has been generated
+     *
+     * @param watermark The number of problems per kind, 0 to stop generating problems in the background
+     * @throws IllegalArgumentException Is thrown if the watermark is negative
+     */
+    public void setProblemPoolWatermark(int watermark) throws IllegalArgumentException {
+        ProblemPool.getProblemPool().setWatermark(watermark);
+    }
+
+    /**
+     * Returns the metrics of the {@link ProblemPool}
+     *
+     * @return "Hits" and "Misses", the number of generated problems served from the pool and generated on request,
+     *         followed by the number of ready problems of every kind, for example "Square/Hard/10x10/C"
+     */
+    public Map<String, Long> getProblemPoolMetrics() {
+        ProblemPool pool = ProblemPool.getProblemPool();
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("Hits", pool.getHits());
+        metrics.put("Misses", pool.getMisses());
+        for (Map.Entry<String, Integer> depth : pool.getDepths().entrySet()) {
+            metrics.put(depth.getKey(), (long) depth.getValue());
         }
-        return new String[0];
+        return metrics;
+    }
+
+    /**
+     * Returns the totals of the generations done by the {@link Generator}, for all of them together ("All") and for
+     * every board class (type, difficulty, size and adjacency of the problem, for example "Square/Hard/10x10/C")
+     *
+     * @return The totals of every group of generations, by the name of the group and of the total. Coverages are
+     *         given in thousandths of the playable cells.
+     */
+    public Map<String, Map<String, Long>> getGeneratorMetrics() {
+        GeneratorMetrics metrics = GeneratorMetrics.getGeneratorMetrics();
+        Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+        result.put("All", toMap(metrics.getTotal()));
+        for (String boardClass : metrics.getBoardClasses()) {
+            GeneratorMetrics.Summary summary = metrics.getSummary(boardClass);
+            if (summary != null) result.put(boardClass, toMap(summary));
+        }
+        return result;
+    }
+
+    /**
+     * Writes the totals of {@link #getGeneratorMetrics()} to a text file, a line per total with the name of its group,
+     * its name and its value separated by tabs
+     *
+     * @param path  The path of the file, which is replaced if it exists
+     * @throws IOException Could not write the file
+     */
+    public void dumpGeneratorMetrics(String path) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(path))) {
+            for (Map.Entry<String, Map<String, Long>> group : getGeneratorMetrics().entrySet()) {
+                for (Map.Entry<String, Long> value : group.getValue().entrySet()) {
+                    out.println(group.getKey() + "\t" + value.getKey() + "\t" + value.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts the totals of a group of generations into a map
+     *
+     * @param summary   The totals of a group of generations
+     * @return The totals by name
+     */
+    private static Map<String, Long> toMap(GeneratorMetrics.Summary summary) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (GeneratorMetrics.Phase phase : GeneratorMetrics.Phase.values()) {
+            result.put("Count " + phase.name(), summary.getCount(phase));
+            result.put("MeanNanos " + phase.name(), summary.getMeanNanos(phase));
+            result.put("MaxNanos " + phase.name(), summary.getMaxNanos(phase));
+        }
+        result.put("FillAttempts", summary.getFillAttempts());
+        result.put("FillRestarts", summary.getFillRestarts());
+        result.put("MeanCoveragePerMille", Math.round(summary.getMeanCoverage() * 1000));
+        result.put("MinCoveragePerMille", Math.round(summary.getMinCoverage() * 1000));
+        result.put("ClueChecks", summary.getClueChecks());
+        for (GeneratorMetrics.Failure failure : GeneratorMetrics.Failure.values()) {
+            result.put("Failures " + failure.name(), summary.getFailures(failure));
+        }
+        return result;
+    }
+
+    /**
+     * Generates a batch of problems in parallel and stores every one of them as soon as it is generated. The problems
+     * are not added to {@link #problemCollection}, so a batch of any size can be generated without keeping it in
+     * memory.
+     *
+     * @param specs A list of specs in the format of {@link BatchGenerator.Spec#parse(String)}, for example
+     *              "Square,Hard,10,10,C,100"
+     * @param seed  The seed of the batch. The same specs and seed always give the same maps.
+     * @return The number of problems stored
+     * @throws IllegalArgumentException Is thrown if a spec is in the wrong format
+     * @throws IOException Could not write a Problem file. The problems still to be generated are not.
+     * @see BatchGenerator#generate(List, String, long, BatchGenerator.Sink)
+     */
+    public long generateProblemBatch(List<String> specs, long seed) throws IllegalArgumentException, IOException {
+        List<BatchGenerator.Spec> batch = new ArrayList<>();
+        for (String spec : specs) batch.add(BatchGenerator.Spec.parse(spec));
+        return new BatchGenerator().generate(batch, loggedPlayer.getName(), seed,
+                p -> ctrlProblemData.save(Problem.idAsHex(p.getId()), p));
     }
 
     /**
@@ -529,41 +890,24 @@ public class CtrlDomain {
      *          {@link #problemCollection} failed.
      * @throws IllegalArgumentException  Is thrown if one of the argumets is in the wrong format. Should be caught.
      * @throws IOException Could not read from a Problem file
+     * @throws SolverTimeoutException The solver could not decide in time whether the map has a solution
      */
     public String[] generatePersonalizedProblem(String type, int numRows, int numColumns, String difficulty, boolean cornerAdjacent, String[][] map)
-                throws IllegalArgumentException, IOException {
-        try {
-            Type.valueOf(type);
-        } catch (IllegalArgumentException e) {
-            throw new IllegalArgumentException("Unrecognised type", e);
-        }
-        try {
-            Difficulty.valueOf(difficulty);
-        } catch (IllegalArgumentException e) {
-            throw new IllegalArgumentException("Unrecognised difficulty", e);
-        }
-        Generator.setPersonalized(true);
-        Problem p = Generator.generate(Type.valueOf(type), numRows, numColumns, Difficulty.valueOf(difficulty),
-                loggedPlayer.getName(), cornerAdjacent);
-        List<String> numbers = new ArrayList<>();
-        for (int i = 0; i < map.length; i++) {
-            for (int j = 0; j < map[0].length; j++) {
-                Generator.addToProblem(p, i, j, map[i][j]);
-                if(!map[i][j].equals("?") && !map[i][j].equals("#") && !map[i][j].equals("*"))  {
-                    numbers.add(map[i][j]);
-                }
-            }
-        }
-
+                throws IllegalArgumentException, IOException, SolverTimeoutException {
+        Type t = parseType(type);
+        Difficulty d = parseDifficulty(difficulty);
+        Problem p;
         try{
-            p = Generator.generatePersonalizedProblem(p, numbers);
+            p = Generator.generatePersonalizedProblem(t, numRows, numColumns, d, loggedPlayer.getName(),
+                    cornerAdjacent, map, solverTimeoutMillis);
             if(p != null){
                 ctrlProblemData.save(Integer.toHexString(p.getId()), p);
             }
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Invalid Problem", e);
+        } catch (TimeoutException e) {
+            throw new SolverTimeoutException();
         }
-        Generator.setPersonalized(false);
         if (p != null && problemCollection.add(p)) {
             return displayableProblemInfo(p);
         }
@@ -1,6 +1,7 @@
 package domain.game;
 
 import domain.logic.Generator;
+import domain.logic.SolutionCache;
 
 import java.io.*;
 import java.text.ParseException;
@@ -276,10 +277,12 @@ public abstract class Problem implements Serializable{
     public abstract Type getType();
 
     /**
-     * Set the map of this problem to the passed map
+     * Set the map of this problem to the passed map. The cached solution of the problem is removed from the
+     * {@link SolutionCache}.
      * @param map The new of the problem
      */
     public void updateMap(String[][] map){
+        SolutionCache.getSolutionCache().invalidate(this);
         for (int i = 0; i < map.length ; i++) {
             for (int j = 0; j < map[0].length; j++) {
                 this.map[i][j] = map[i][j];
@@ -0,0 +1,264 @@
+package domain.logic;
+
+import domain.game.Difficulty;
+import domain.game.Problem;
+import domain.game.Type;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BatchGenerator generates many problems in parallel with the {@link Generator}. A batch is a list of {@link Spec}s,
+ * every one asking for a number of problems of a type, size, difficulty and adjacency. Every problem is generated by
+ * its own task with its own seed, drawn from the seed of the batch, so the same batch with the same seed always gives
+ * the same maps, whatever the number of threads.
+ *
+ * Every finished problem is passed to a {@link Sink} and then forgotten. Only a bounded number of problems can be
+ * generated but not yet written at any time, so the memory used does not grow with the size of the batch.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class BatchGenerator {
+
+    /**
+     * Receives the problems of a batch as they are generated. It is called from several threads at the same time.
+     */
+    public interface Sink {
+        /**
+         * Stores a generated problem
+         * @param problem The problem
+         * @throws IOException Could not store the problem. The batch is stopped.
+         */
+        void accept(Problem problem) throws IOException;
+    }
+
+    /**
+     * Number of problems being generated or waiting to be written per thread
+     */
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+
+    /**
+     * Number of threads generating problems
+     */
+    private final int parallelism;
+
+    /**
+     * Creates a batch generator that uses a thread per available processor
+     */
+    public BatchGenerator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a batch generator
+     * @param parallelism Number of threads generating problems, at least 1
+     * @throws IllegalArgumentException Is thrown if parallelism is lower than 1
+     */
+    public BatchGenerator(int parallelism) throws IllegalArgumentException {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Generates the problems of a batch and passes every one of them to the sink. A problem that can not be generated
+     * with the difficulty of its spec is left out, and the miss is recorded in the {@link GeneratorMetrics}.
+     * @param specs The problems to generate
+     * @param creatorName The name of the creator of the problems
+     * @param seed The seed of the batch
+     * @param sink Receives every generated problem
+     * @return The number of problems passed to the sink, lower than the number asked for if some were left out
+     * @throws IOException Is thrown if the sink could not store a problem. The problems that were still to be
+     *                     generated are not.
+     */
+    public long generate(List<Spec> specs, String creatorName, long seed, Sink sink) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "hidato-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore inFlight = new Semaphore(parallelism * IN_FLIGHT_PER_THREAD);
+        AtomicLong written = new AtomicLong();
+        List<Throwable> failures = new ArrayList<>();
+        SplittableRandom seeds = new SplittableRandom(seed);
+        try {
+            batch:
+            for (Spec spec : specs) {
+                for (int i = 0; i < spec.count; i++) {
+                    long taskSeed = seeds.nextLong();
+                    inFlight.acquire();
+                    synchronized (failures) {
+                        if (!failures.isEmpty()) {
+                            inFlight.release();
+                            break batch;
+                        }
+                    }
+                    executor.execute(() -> {
+                        try {
+                            Problem p = Generator.generate(spec.type, spec.numRows, spec.numColumns,
+                                    spec.difficulty, creatorName, spec.cornerAdjacent, taskSeed);
+                            if (p.getDifficulty() == spec.difficulty) {
+                                sink.accept(p);
+                                written.incrementAndGet();
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            synchronized (failures) {
+                                failures.add(e);
+                            }
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (failures) {
+            if (!failures.isEmpty()) {
+                Throwable failure = failures.get(0);
+                if (failure instanceof IOException) throw (IOException) failure;
+                throw new IllegalStateException("Problem generation failed", failure);
+            }
+        }
+        return written.get();
+    }
+
+    /**
+     * A number of problems of the same type, size, difficulty and adjacency
+     */
+    public static class Spec {
+        /**
+         * Type of the problems
+         */
+        private final Type type;
+
+        /**
+         * Number of rows of the problems
+         */
+        private final int numRows;
+
+        /**
+         * Number of columns of the problems
+         */
+        private final int numColumns;
+
+        /**
+         * Difficulty asked for the problems
+         */
+        private final Difficulty difficulty;
+
+        /**
+         * Whether fields sharing a corner are neighbours
+         */
+        private final boolean cornerAdjacent;
+
+        /**
+         * Number of problems
+         */
+        private final int count;
+
+        /**
+         * Creates a spec
+         * @param type The type of the problems
+         * @param numRows The number of rows of the problems
+         * @param numColumns The number of columns of the problems
+         * @param difficulty The difficulty asked for the problems
+         * @param cornerAdjacent Whether fields sharing a corner are neighbours (not relevant for hexagons)
+         * @param count The number of problems
+         * @throws IllegalArgumentException Is thrown if a size is lower than 2 or the count is negative
+         */
+        public Spec(Type type, int numRows, int numColumns, Difficulty difficulty, boolean cornerAdjacent, int count)
+                throws IllegalArgumentException {
+            if (type == null || difficulty == null) throw new IllegalArgumentException("Type and difficulty are needed");
+            if (numRows < 2 || numColumns < 2) throw new IllegalArgumentException("Problems need at least 2x2 fields");
+            if (count < 0) throw new IllegalArgumentException("Count can not be negative");
+            this.type = type;
+            this.numRows = numRows;
+            this.numColumns = numColumns;
+            this.difficulty = difficulty;
+            this.cornerAdjacent = cornerAdjacent;
+            this.count = count;
+        }
+
+        /**
+         * Parses a spec written as "type,difficulty,rows,columns,adjacency,count", where adjacency is "CA" if fields
+         * sharing a corner are neighbours and "C" otherwise, for example "Square,Hard,10,10,C,100"
+         * @param spec The written spec
+         * @return The spec
+         * @throws IllegalArgumentException Is thrown if the spec is not in this format
+         */
+        public static Spec parse(String spec) throws IllegalArgumentException {
+            String[] fields = spec.split(",");
+            if (fields.length != 6) throw new IllegalArgumentException("Unrecognised batch spec: " + spec);
+            if (!fields[4].trim().equals("C") && !fields[4].trim().equals("CA"))
+                throw new IllegalArgumentException("Unrecognised adjacency: " + fields[4]);
+            try {
+                return new Spec(Type.valueOf(fields[0].trim()), Integer.parseInt(fields[2].trim()),
+                        Integer.parseInt(fields[3].trim()), Difficulty.valueOf(fields[1].trim()),
+                        fields[4].trim().equals("CA"), Integer.parseInt(fields[5].trim()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unrecognised batch spec: " + spec, e);
+            }
+        }
+
+        /**
+         * Getter function for the type
+         * @return The type of the problems
+         */
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * Getter function for the number of rows
+         * @return The number of rows of the problems
+         */
+        public int getNumRows() {
+            return numRows;
+        }
+
+        /**
+         * Getter function for the number of columns
+         * @return The number of columns of the problems
+         */
+        public int getNumColumns() {
+            return numColumns;
+        }
+
+        /**
+         * Getter function for the difficulty
+         * @return The difficulty asked for the problems
+         */
+        public Difficulty getDifficulty() {
+            return difficulty;
+        }
+
+        /**
+         * Getter function for the adjacency
+         * @return Whether fields sharing a corner are neighbours
+         */
+        public boolean isCornerAdjacent() {
+            return cornerAdjacent;
+        }
+
+        /**
+         * Getter function for the count
+         * @return The number of problems
+         */
+        public int getCount() {
+            return count;
+        }
+    }
+}
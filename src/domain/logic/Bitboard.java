@@ -0,0 +1,219 @@
+package domain.logic;
+
+import java.util.Arrays;
+
+/**
+ * Bitboard is a set of cells of a square map stored as one long per row: the bit c of the word r is set if the cell
+ * in row r and column c is part of the set. Maps with up to {@link #MAX_COLUMNS} columns fit.
+ *
+ * Testing the neighbours of a cell and flooding a region become operations on whole rows instead of one cell at a
+ * time. A flood fills every row with shifts (the Kogge-Stone fill) and spreads between rows until nothing changes,
+ * so the number of passes depends on how many times the region turns, not on how many cells it has.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+class Bitboard {
+
+    /**
+     * Maximum number of columns of a map stored in a bitboard
+     */
+    static final int MAX_COLUMNS = 64;
+
+    /**
+     * One word per row, bit c is the column c
+     */
+    private final long[] rows;
+
+    /**
+     * The number of rows of the map
+     */
+    private final int numRows;
+
+    /**
+     * The number of columns of the map
+     */
+    private final int numColumns;
+
+    /**
+     * Creates an empty bitboard
+     *
+     * @param numRows       The number of rows of the map
+     * @param numColumns    The number of columns of the map, at most {@link #MAX_COLUMNS}
+     */
+    Bitboard(int numRows, int numColumns) {
+        if (!fits(numColumns)) throw new IllegalArgumentException("Too many columns for a bitboard");
+        this.rows = new long[numRows];
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+    }
+
+    /**
+     * Returns whether a map with the passed number of columns can be stored in a bitboard
+     *
+     * @param numColumns    The number of columns of the map
+     * @return true if there are at most {@link #MAX_COLUMNS} columns
+     */
+    static boolean fits(int numColumns) {
+        return numColumns <= MAX_COLUMNS;
+    }
+
+    /**
+     * Returns whether a cell is in the set
+     *
+     * @param row       The row of the cell
+     * @param column    The column of the cell
+     * @return true if the cell is in the set
+     */
+    boolean get(int row, int column) {
+        return (rows[row] & (1L << column)) != 0;
+    }
+
+    /**
+     * Adds a cell to the set
+     *
+     * @param row       The row of the cell
+     * @param column    The column of the cell
+     */
+    void set(int row, int column) {
+        rows[row] |= 1L << column;
+    }
+
+    /**
+     * Removes a cell from the set
+     *
+     * @param row       The row of the cell
+     * @param column    The column of the cell
+     */
+    void clear(int row, int column) {
+        rows[row] &= ~(1L << column);
+    }
+
+    /**
+     * Adds a cell of a {@link CellGraph} to the set
+     *
+     * @param cell  The index of the cell, row * numColumns + column
+     */
+    void set(int cell) {
+        rows[cell / numColumns] |= 1L << (cell % numColumns);
+    }
+
+    /**
+     * Removes a cell of a {@link CellGraph} from the set
+     *
+     * @param cell  The index of the cell, row * numColumns + column
+     */
+    void clear(int cell) {
+        rows[cell / numColumns] &= ~(1L << (cell % numColumns));
+    }
+
+    /**
+     * Counts the cells that are in this set and in another one
+     *
+     * @param other A bitboard of the same size
+     * @return The number of cells in both sets
+     */
+    int countAnd(Bitboard other) {
+        int count = 0;
+        for (int r = 0; r < numRows; r++) count += Long.bitCount(rows[r] & other.rows[r]);
+        return count;
+    }
+
+    /**
+     * Counts the cells that are in this set but not in another one
+     *
+     * @param other A bitboard of the same size
+     * @return The number of cells only in this set
+     */
+    int countAndNot(Bitboard other) {
+        int count = 0;
+        for (int r = 0; r < numRows; r++) count += Long.bitCount(rows[r] & ~other.rows[r]);
+        return count;
+    }
+
+    /**
+     * Replaces the content of this set with the region of another set that contains a cell: the cells of the other
+     * set that can be reached from the cell moving only through cells of the other set.
+     *
+     * @param region            The cells that can be crossed, a bitboard of the same size
+     * @param row               The row of the first cell, which has to be in the region
+     * @param column            The column of the first cell
+     * @param cornerAdjacent    Whether cells sharing a corner are neighbours
+     */
+    void flood(Bitboard region, int row, int column, boolean cornerAdjacent) {
+        long[] mask = region.rows;
+        Arrays.fill(rows, 0);
+        rows[row] = fillRow(mask[row], 1L << column);
+        int low = row;
+        int high = row;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int r = Math.max(low, 1); r < numRows; r++) {
+                long seeds = spread(rows[r - 1], cornerAdjacent) & mask[r] & ~rows[r];
+                if (seeds != 0) {
+                    rows[r] |= fillRow(mask[r], seeds);
+                    if (r > high) high = r;
+                    changed = true;
+                }
+            }
+            for (int r = Math.min(high, numRows - 1) - 1; r >= 0; r--) {
+                long seeds = spread(rows[r + 1], cornerAdjacent) & mask[r] & ~rows[r];
+                if (seeds != 0) {
+                    rows[r] |= fillRow(mask[r], seeds);
+                    if (r < low) low = r;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cells of the row next to a row that touch one of its cells
+     *
+     * @param word              The cells of a row
+     * @param cornerAdjacent    Whether cells sharing a corner are neighbours
+     * @return The columns touching the cells of the row
+     */
+    private static long spread(long word, boolean cornerAdjacent) {
+        return cornerAdjacent ? word | (word << 1) | (word >>> 1) : word;
+    }
+
+    /**
+     * Fills the runs of a row that contain a seed
+     *
+     * @param mask  The cells of the row that can be filled
+     * @param seeds The cells where the fill starts, all of them in the mask
+     * @return The cells of the runs of the mask containing a seed
+     */
+    private static long fillRow(long mask, long seeds) {
+        long up = seeds;
+        long open = mask;
+        up |= open & (up << 1);
+        open &= open << 1;
+        up |= open & (up << 2);
+        open &= open << 2;
+        up |= open & (up << 4);
+        open &= open << 4;
+        up |= open & (up << 8);
+        open &= open << 8;
+        up |= open & (up << 16);
+        open &= open << 16;
+        up |= open & (up << 32);
+
+        long down = seeds;
+        open = mask;
+        down |= open & (down >>> 1);
+        open &= open >>> 1;
+        down |= open & (down >>> 2);
+        open &= open >>> 2;
+        down |= open & (down >>> 4);
+        open &= open >>> 4;
+        down |= open & (down >>> 8);
+        open &= open >>> 8;
+        down |= open & (down >>> 16);
+        open &= open >>> 16;
+        down |= open & (down >>> 32);
+        return up | down;
+    }
+}
@@ -0,0 +1,572 @@
+package domain.logic;
+
+import domain.game.Problem;
+import domain.game.SquareProblem;
+import domain.game.TriangleProblem;
+import domain.game.Type;
+
+import java.util.Arrays;
+
+/**
+ * CellGraph is the compiled form of a Hidato map. Every cell of the map gets an int index (row * numColumns + column)
+ * and the adjacency of the playable cells is stored once in a flat CSR layout: the neighbours of the cell i are
+ * neighbours[offsets[i]] .. neighbours[offsets[i+1] - 1]. Cells that are part of the outside ("#") or not playable
+ * ("*") have no neighbours and are never the neighbour of another cell.
+ *
+ * The same structure is used for {@link Type#Square}, {@link Type#Triangle} and {@link Type#Hexagon} maps, so the
+ * algorithms working on it do not need to know the geometry of the problem.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class CellGraph {
+
+    /**
+     * Value of a cell that is part of the outside ("#")
+     */
+    public static final int HOLE = -1;
+
+    /**
+     * Value of a cell that is not playable ("*")
+     */
+    public static final int BLOCKED = -2;
+
+    /**
+     * Value of an empty playable cell ("?")
+     */
+    public static final int FREE = 0;
+
+    /**
+     * Row and column offsets of the neighbours of a square cell, only faces
+     */
+    private static final int[][][] SQUARE_C = {
+            {{-1, 0}, {1, 0}, {0, 1}, {0, -1}}
+    };
+
+    /**
+     * Row and column offsets of the neighbours of a square cell, faces and corners
+     */
+    private static final int[][][] SQUARE_CA = {
+            {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}}
+    };
+
+    /**
+     * Row and column offsets of the neighbours of a triangle cell, only faces.
+     * Index 0 is used when row % 2 == column % 2 (triangle pointing up), index 1 otherwise.
+     */
+    private static final int[][][] TRIANGLE_C = {
+            {{0, 1}, {0, -1}, {1, 0}},
+            {{0, 1}, {0, -1}, {-1, 0}}
+    };
+
+    /**
+     * Row and column offsets of the neighbours of a triangle cell, faces and corners.
+     * Index 0 is used when row % 2 == column % 2 (triangle pointing up), index 1 otherwise.
+     */
+    private static final int[][][] TRIANGLE_CA = {
+            {{0, 1}, {0, -1}, {0, -2}, {0, 2}, {-1, -1}, {-1, 0}, {-1, 1}, {1, -1}, {1, 0}, {1, 1}, {1, -2}, {1, 2}},
+            {{0, 1}, {0, -1}, {0, -2}, {0, 2}, {-1, -1}, {-1, 0}, {-1, 1}, {1, -1}, {1, 0}, {1, 1}, {-1, -2}, {-1, 2}}
+    };
+
+    /**
+     * Row and column offsets of the neighbours of a hexagon cell.
+     * Index 0 is used for even rows, index 1 for odd rows.
+     */
+    private static final int[][][] HEXAGON = {
+            {{0, 1}, {0, -1}, {-1, 0}, {1, 0}, {-1, -1}, {1, -1}},
+            {{0, 1}, {0, -1}, {-1, 0}, {1, 0}, {-1, 1}, {1, 1}}
+    };
+
+    /**
+     * Number of rows of the compiled map
+     */
+    private final int numRows;
+
+    /**
+     * Number of columns of the compiled map
+     */
+    private final int numColumns;
+
+    /**
+     * The type of the compiled map
+     */
+    private final Type type;
+
+    /**
+     * Whether fields sharing a corner are neighbours (not relevant for {@link Type#Hexagon})
+     */
+    private final boolean cornerAdjacent;
+
+    /**
+     * Initial value of every cell: {@link #HOLE}, {@link #BLOCKED}, {@link #FREE} or the given number
+     */
+    final int[] values;
+
+    /**
+     * Start position of the neighbours of every cell in {@link #neighbours}. Has size() + 1 entries.
+     */
+    final int[] offsets;
+
+    /**
+     * Indices of the neighbours of all cells, grouped by cell
+     */
+    final int[] neighbours;
+
+    /**
+     * For every entry k of {@link #neighbours}, a neighbour of some cell c, the bit mask of the other neighbours of c
+     * that are neighbours of it too. Bit i stands for the neighbour at offsets[c] + i, so a cell has at most 32
+     * neighbours.
+     */
+    final int[] neighbourLinks;
+
+    /**
+     * Whether the playable cells can be coloured with two colours so that neighbours never share a colour.
+     * Null until computed by {@link #isBipartite()}.
+     */
+    private Boolean bipartite;
+
+    /**
+     * Builds the graph of a map. Use {@link #compile(Problem)} or {@link #compile(String[][], Type, boolean)}.
+     *
+     * @param values            Initial value of every cell
+     * @param numRows           Number of rows of the map
+     * @param numColumns        Number of columns of the map
+     * @param type              Type of the map
+     * @param cornerAdjacent    Whether fields sharing a corner are neighbours
+     */
+    private CellGraph(int[] values, int numRows, int numColumns, Type type, boolean cornerAdjacent) {
+        this.values = values;
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+        this.type = type;
+        this.cornerAdjacent = cornerAdjacent;
+
+        int[][][] deltas = deltasFor(type, cornerAdjacent);
+        int size = values.length;
+        offsets = new int[size + 1];
+        int[] buffer = new int[size * deltas[0].length];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            offsets[i] = count;
+            if (!isPlayable(values[i])) continue;
+            int r = i / numColumns;
+            int c = i % numColumns;
+            int[][] d = deltas[parity(type, r, c)];
+            for (int[] delta : d) {
+                int nr = r + delta[0];
+                int nc = c + delta[1];
+                if (nr < 0 || nc < 0 || nr >= numRows || nc >= numColumns) continue;
+                int j = nr * numColumns + nc;
+                if (isPlayable(values[j])) buffer[count++] = j;
+            }
+        }
+        offsets[size] = count;
+        neighbours = new int[count];
+        System.arraycopy(buffer, 0, neighbours, 0, count);
+        neighbourLinks = linkNeighbours();
+    }
+
+    /**
+     * Computes {@link #neighbourLinks}
+     *
+     * @return The links between the neighbours of every cell
+     */
+    private int[] linkNeighbours() {
+        int[] links = new int[neighbours.length];
+        int[] position = new int[values.length];
+        Arrays.fill(position, -1);
+        for (int cell = 0; cell < values.length; cell++) {
+            int first = offsets[cell];
+            for (int k = first; k < offsets[cell + 1]; k++) position[neighbours[k]] = k - first;
+            for (int k = first; k < offsets[cell + 1]; k++) {
+                int u = neighbours[k];
+                for (int l = offsets[u]; l < offsets[u + 1]; l++) {
+                    int i = position[neighbours[l]];
+                    if (i >= 0) links[k] |= 1 << i;
+                }
+            }
+            for (int k = first; k < offsets[cell + 1]; k++) position[neighbours[k]] = -1;
+        }
+        return links;
+    }
+
+    /**
+     * Builds a graph with other values and the adjacency of another graph
+     *
+     * @param graph     The graph whose adjacency is shared
+     * @param values    Initial value of every cell, with the same playable cells as the graph
+     */
+    private CellGraph(CellGraph graph, int[] values) {
+        this.values = values;
+        this.numRows = graph.numRows;
+        this.numColumns = graph.numColumns;
+        this.type = graph.type;
+        this.cornerAdjacent = graph.cornerAdjacent;
+        this.offsets = graph.offsets;
+        this.neighbours = graph.neighbours;
+        this.neighbourLinks = graph.neighbourLinks;
+        this.bipartite = graph.bipartite;
+    }
+
+    /**
+     * Compiles the values of a map of the same size and geometry as this graph
+     *
+     * @param cellValues    The value of every cell, indexed like this graph
+     * @return The graph of the values
+     */
+    CellGraph recompile(int[] cellValues) {
+        return new CellGraph(cellValues.clone(), numRows, numColumns, type, cornerAdjacent);
+    }
+
+    /**
+     * Returns a graph with other values and the same adjacency as this one, without compiling it again
+     *
+     * @param cellValues    The value of every cell, indexed like this graph. The cells that are playable (empty or
+     *                      holding a number) have to be the same as in this graph.
+     * @return The graph of the values
+     */
+    CellGraph withValues(int[] cellValues) {
+        return new CellGraph(this, cellValues.clone());
+    }
+
+    /**
+     * Compiles the map of a problem into a graph
+     *
+     * @param problem   A {@link Problem}
+     * @return The graph of the map of the problem
+     */
+    public static CellGraph compile(Problem problem) {
+        return compile(problem.getMap(), problem.getType(), isCornerAdjacent(problem));
+    }
+
+    /**
+     * Compiles a map into a graph
+     *
+     * @param map               A map containing numbers or "#", "?", "*"
+     * @param type              The type of the map
+     * @param cornerAdjacent    Whether fields sharing a corner are neighbours (not relevant for {@link Type#Hexagon})
+     * @return The graph of the map
+     */
+    public static CellGraph compile(String[][] map, Type type, boolean cornerAdjacent) {
+        int rows = map.length;
+        int columns = map[0].length;
+        int[] values = new int[rows * columns];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                values[r * columns + c] = parseCell(map[r][c]);
+            }
+        }
+        return new CellGraph(values, rows, columns, type, cornerAdjacent);
+    }
+
+    /**
+     * Returns whether the problem counts fields sharing a corner as neighbours
+     *
+     * @param problem   A {@link Problem}
+     * @return true if it is a corner adjacent {@link SquareProblem} or {@link TriangleProblem}, false otherwise
+     */
+    public static boolean isCornerAdjacent(Problem problem) {
+        if (problem instanceof SquareProblem) return ((SquareProblem) problem).isCornerAdjacent();
+        if (problem instanceof TriangleProblem) return ((TriangleProblem) problem).isCornerAdjacent();
+        return false;
+    }
+
+    /**
+     * Translates the content of a field of a map to its int value
+     *
+     * @param cell  A number or "#", "?", "*"
+     * @return The value of the cell
+     */
+    private static int parseCell(String cell) {
+        switch (cell) {
+            case "?":
+                return FREE;
+            case "#":
+                return HOLE;
+            case "*":
+                return BLOCKED;
+            default:
+                return Integer.parseInt(cell);
+        }
+    }
+
+    /**
+     * Translates an int value to the content of a field of a map
+     *
+     * @param value The value of a cell
+     * @return "#", "*" or the number of the cell ("0" for an empty cell)
+     */
+    private static String printCell(int value) {
+        if (value == HOLE) return "#";
+        if (value == BLOCKED) return "*";
+        return String.valueOf(value);
+    }
+
+    /**
+     * Returns whether a cell with the given value can hold a number
+     *
+     * @param value The value of a cell
+     * @return true if the cell is empty or contains a number
+     */
+    private static boolean isPlayable(int value) {
+        return value >= 0;
+    }
+
+    /**
+     * Returns the neighbour offsets for a geometry
+     *
+     * @param type              The type of the map
+     * @param cornerAdjacent    Whether fields sharing a corner are neighbours
+     * @return The offset tables indexed by {@link #parity(Type, int, int)}
+     */
+    private static int[][][] deltasFor(Type type, boolean cornerAdjacent) {
+        switch (type) {
+            case Square:
+                return cornerAdjacent ? SQUARE_CA : SQUARE_C;
+            case Triangle:
+                return cornerAdjacent ? TRIANGLE_CA : TRIANGLE_C;
+            default:
+                return HEXAGON;
+        }
+    }
+
+    /**
+     * Returns which offset table has to be used for a cell
+     *
+     * @param type  The type of the map
+     * @param r     The row of the cell
+     * @param c     The column of the cell
+     * @return The index of the offset table
+     */
+    private static int parity(Type type, int r, int c) {
+        switch (type) {
+            case Triangle:
+                return r % 2 == c % 2 ? 0 : 1;
+            case Hexagon:
+                return r % 2;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Builds a map out of the values of the cells
+     *
+     * @param cellValues    The value of every cell, indexed like this graph
+     * @return A map containing numbers or "#", "*"
+     */
+    public String[][] toMap(int[] cellValues) {
+        String[][] map = new String[numRows][numColumns];
+        for (int r = 0; r < numRows; r++) {
+            for (int c = 0; c < numColumns; c++) {
+                map[r][c] = printCell(cellValues[r * numColumns + c]);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Returns a copy of the initial values of the cells
+     *
+     * @return The value of every cell: {@link #HOLE}, {@link #BLOCKED}, {@link #FREE} or the given number
+     */
+    public int[] getValues() {
+        return values.clone();
+    }
+
+    /**
+     * Returns the number of cells of the map (including the not playable ones)
+     *
+     * @return numRows * numColumns
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Returns the index of a cell
+     *
+     * @param row       The row of the cell
+     * @param column    The column of the cell
+     * @return The index of the cell in this graph
+     */
+    public int cellOf(int row, int column) {
+        return row * numColumns + column;
+    }
+
+    /**
+     * Returns the row of a cell
+     *
+     * @param cell  The index of a cell
+     * @return The row of the cell
+     */
+    public int rowOf(int cell) {
+        return cell / numColumns;
+    }
+
+    /**
+     * Returns the column of a cell
+     *
+     * @param cell  The index of a cell
+     * @return The column of the cell
+     */
+    public int columnOf(int cell) {
+        return cell % numColumns;
+    }
+
+    /**
+     * Returns the number of neighbours of a cell
+     *
+     * @param cell  The index of a cell
+     * @return The number of playable neighbours of the cell
+     */
+    public int degree(int cell) {
+        return offsets[cell + 1] - offsets[cell];
+    }
+
+    /**
+     * Returns whether two cells are neighbours
+     *
+     * @param a The index of a cell
+     * @param b The index of another cell
+     * @return true if b is a neighbour of a
+     */
+    public boolean areNeighbours(int a, int b) {
+        for (int k = offsets[a]; k < offsets[a + 1]; k++) {
+            if (neighbours[k] == b) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Computes the length of the shortest path from a cell to every other cell (breadth first search). Only cells at
+     * a distance up to the passed limit are explored.
+     *
+     * @param cell  The index of the source cell
+     * @param limit The maximum distance to explore
+     * @return The distance of every cell to the source, {@link Integer#MAX_VALUE} if it is farther than the limit or
+     *         not reachable
+     */
+    public int[] distancesFrom(int cell, int limit) {
+        int[] dist = new int[values.length];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        int[] queue = new int[values.length];
+        int head = 0;
+        int tail = 0;
+        dist[cell] = 0;
+        queue[tail++] = cell;
+        while (head < tail) {
+            int u = queue[head++];
+            int d = dist[u] + 1;
+            if (d > limit) continue;
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                int v = neighbours[k];
+                if (dist[v] == Integer.MAX_VALUE) {
+                    dist[v] = d;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Computes the distance from a cell to the cells up to a limit like {@link #distancesFrom(int, int)}, in arrays of
+     * the caller so that many searches can be done without allocating
+     *
+     * @param cell      The index of the source cell
+     * @param limit     The maximum distance to explore
+     * @param dist      Receives the distance of the explored cells. Every entry has to be {@link Integer#MAX_VALUE}
+     *                  when called; only the entries of the explored cells are changed.
+     * @param explored  Receives the explored cells, in order of distance
+     * @return The number of explored cells
+     */
+    public int distancesFrom(int cell, int limit, int[] dist, int[] explored) {
+        int head = 0;
+        int tail = 0;
+        dist[cell] = 0;
+        explored[tail++] = cell;
+        while (head < tail) {
+            int u = explored[head++];
+            int d = dist[u] + 1;
+            if (d > limit) continue;
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                int v = neighbours[k];
+                if (dist[v] == Integer.MAX_VALUE) {
+                    dist[v] = d;
+                    explored[tail++] = v;
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Returns whether the graph is bipartite, which is the case for {@link Type#Square} and {@link Type#Triangle}
+     * maps with only face adjacency. In a bipartite graph every path between two cells has the same parity as the
+     * distance between them.
+     *
+     * @return true if the playable cells can be coloured with two colours so that neighbours never share a colour
+     */
+    public boolean isBipartite() {
+        if (bipartite == null) {
+            int[] colour = new int[values.length];
+            int[] queue = new int[values.length];
+            boolean result = true;
+            for (int s = 0; s < values.length && result; s++) {
+                if (colour[s] != 0 || !isPlayable(values[s])) continue;
+                int head = 0;
+                int tail = 0;
+                colour[s] = 1;
+                queue[tail++] = s;
+                while (head < tail && result) {
+                    int u = queue[head++];
+                    for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                        int v = neighbours[k];
+                        if (colour[v] == 0) {
+                            colour[v] = -colour[u];
+                            queue[tail++] = v;
+                        }
+                        else if (colour[v] == colour[u]) {
+                            result = false;
+                        }
+                    }
+                }
+            }
+            bipartite = result;
+        }
+        return bipartite;
+    }
+
+    /**
+     * Getter function for the number of rows
+     * @return The number of rows of the map
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Getter function for the number of columns
+     * @return The number of columns of the map
+     */
+    public int getNumColumns() {
+        return numColumns;
+    }
+
+    /**
+     * Getter function for the type
+     * @return The {@link Type} of the map
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Getter function for the adjacency
+     * @return Whether fields sharing a corner are neighbours
+     */
+    public boolean isCornerAdjacent() {
+        return cornerAdjacent;
+    }
+}
@@ -0,0 +1,130 @@
+package domain.logic;
+
+import domain.game.Difficulty;
+import domain.game.HexagonProblem;
+import domain.game.Problem;
+import domain.game.SquareProblem;
+import domain.game.TriangleProblem;
+
+/**
+ * DifficultyRater measures how hard a problem is by solving it with the {@link PropagationSolver}, which places the
+ * numbers it can deduce before it branches. The effort of the solve is scored per playable cell, so that a big board
+ * is not harder than a small one only because it has more cells to fill:
+ *
+ *   100 * (empty cells + deductions + 3 * hidden singles + 10 * branching decisions) / playable cells
+ *
+ * Every empty cell has to be filled, a number left with a single cell is an easy deduction, a number that is the only
+ * candidate of a cell is a harder one, and every guess is much harder than any deduction. The score is mapped to a
+ * {@link Difficulty} with thresholds calibrated on problems generated on boards from 6x6 to 30x30:
+ *
+ *      0 - 30:  Beginner
+ *     31 - 60:  Easy
+ *     61 - 100: Medium
+ *    101 - 180: Hard
+ *    181 - 320: Pro
+ *    321 -   :  Insane
+ *
+ * A problem that is solved without any guess is rated at most {@link #MAX_DEDUCED}, whatever its score. The solve is
+ * bounded by {@link #DECISION_BUDGET} decisions, past them the problem is rated {@link Difficulty#Insane}.
+ * The difficulty is part of the id of a problem, so the rating only depends on the map and a seeded generation always
+ * gives the same problem. {@link #TIMEOUT_MILLIS} is only a safety limit for maps whose propagation is too slow: a
+ * solve that reaches it leaves the problem unrated. Rating a problem takes about a millisecond, so it can be done
+ * whenever a problem is generated or imported.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class DifficultyRater {
+
+    /**
+     * Maximum number of branching decisions of a rating solve
+     */
+    public static final long DECISION_BUDGET = 2000;
+
+    /**
+     * Maximum time of a rating solve, in milliseconds, after which the problem is left unrated
+     */
+    public static final long TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Highest difficulty of a problem that is solved without any branching decision
+     */
+    public static final Difficulty MAX_DEDUCED = Difficulty.Medium;
+
+    /**
+     * Highest score of every difficulty but the last one, in the order of {@link Difficulty#values()}
+     */
+    private static final long[] THRESHOLDS = {30, 60, 100, 180, 320};
+
+    /**
+     * Rates a problem
+     * @param problem A problem
+     * @return The measured difficulty, or null if the problem has no solution or could not be rated before
+     *         {@link #TIMEOUT_MILLIS}
+     */
+    public static Difficulty rate(Problem problem) {
+        return rate(CellGraph.compile(problem));
+    }
+
+    /**
+     * Rates a compiled map
+     * @param graph The graph of the map of a problem
+     * @return The measured difficulty, or null if the map has no solution or could not be rated before
+     *         {@link #TIMEOUT_MILLIS}
+     */
+    static Difficulty rate(CellGraph graph) {
+        PropagationSolver solver = new PropagationSolver();
+        solver.setDecisionBudget(DECISION_BUDGET);
+        SolveResult result = solver.solve(graph, new SolveToken(TIMEOUT_MILLIS));
+        if (solver.isBudgetExceeded()) return Difficulty.Insane;
+        if (result.isStopped()) return null;
+        if (!result.isSolved()) return null;
+        int empty = 0;
+        int playable = 0;
+        for (int value : graph.getValues()) {
+            if (value == CellGraph.FREE) empty++;
+            if (value != CellGraph.HOLE && value != CellGraph.BLOCKED) playable++;
+        }
+        long effort = empty + solver.getDeductions() + 3 * solver.getHiddenSingles() + 10 * solver.getDecisions();
+        Difficulty difficulty = difficultyOf(100 * effort / Math.max(playable, 1));
+        if (solver.getDecisions() == 0 && difficulty.compareTo(MAX_DEDUCED) > 0) return MAX_DEDUCED;
+        return difficulty;
+    }
+
+    /**
+     * Returns a problem with the measured difficulty. The difficulty is part of the id of a problem, so if it changes a
+     * new problem is created.
+     * @param problem A problem
+     * @return The passed problem if its difficulty is the measured one, it has no solution or it could not be rated,
+     *         otherwise a problem with the same map and the measured difficulty
+     */
+    public static Problem rated(Problem problem) {
+        Difficulty difficulty = rate(problem);
+        if (difficulty == null || difficulty == problem.getDifficulty()) return problem;
+        switch (problem.getType()) {
+            case Square:
+                return new SquareProblem(problem.getMap(), problem.getNumRows(), problem.getNumColumns(), difficulty,
+                        problem.getCreatorName(), ((SquareProblem) problem).isCornerAdjacent());
+            case Triangle:
+                return new TriangleProblem(problem.getMap(), problem.getNumRows(), problem.getNumColumns(), difficulty,
+                        problem.getCreatorName(), ((TriangleProblem) problem).isCornerAdjacent());
+            default:
+                return new HexagonProblem(problem.getMap(), problem.getNumRows(), problem.getNumColumns(), difficulty,
+                        problem.getCreatorName());
+        }
+    }
+
+    /**
+     * Maps a score to a difficulty
+     * @param score The effort of a solve per playable cell, in hundredths
+     * @return The difficulty of the score
+     */
+    static Difficulty difficultyOf(long score) {
+        Difficulty[] difficulties = Difficulty.values();
+        for (int i = 0; i < THRESHOLDS.length; i++) {
+            if (score <= THRESHOLDS[i]) return difficulties[i];
+        }
+        return difficulties[difficulties.length - 1];
+    }
+
+}
@@ -3,9 +3,11 @@ package domain.logic;
 import domain.game.*;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
-import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
 
 /**
  * The Generator class contains all the methods that can be called in order to
@@ -18,49 +20,129 @@ import java.util.Collections;
  */
 public class Generator {
     /**
-     * Coords is an inner class that has two attributes.
-     * x represents a X coordinate
-     * y represents de Y coordinate
+     * The ways the board can be filled with the path of numbers
      */
-    private static class Coords {
-        private int x;
-        private int y;
-
+    public enum FillEngine {
         /**
-         * Constructs a point X,Y
-         * @param x the coordinate x
-         * @param y the coordinate y
+         * Random walks from random cells, repeated until one covers a minimum part of the board
          */
-        Coords(int x, int y) {
-            this.x = x;
-            this.y = y;
-        }
-
+        RANDOM_WALK,
         /**
-         * Returns de X coordinate
-         * @return x coordinate
+         * One walk that always moves to the free neighbour with the fewest free neighbours (Warnsdorff's rule),
+         * repaired with a limited number of rotations when it gets stuck
          */
-        int getX() {
-            return x;
-        }
+        WARNSDORFF
+    }
 
-        /**
-         * returns de Y coordinate
-         * @return y coordinate
-         */
-        public int getY() {
-            return y;
-        }
+    /**
+     * Default maximum number of branching decisions of the solution count that checks the removal of a number, per
+     * {@link #BUDGET_CELLS} numbers of the board
+     */
+    public static final long DEFAULT_CLUE_DECISION_BUDGET = 8;
+
+    /**
+     * Default time in milliseconds the solver may spend on the numbers placed by the user of a personalized problem
+     */
+    public static final long DEFAULT_SOLVE_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Maximum number of solution counts done to remove the numbers of a board. Every count solves the whole board, so
+     * this bounds the time spent on the numbers of big boards; the numbers that are left are kept.
+     */
+    private static final int MAX_CLUE_CHECKS = 256;
+
+    /**
+     * Numbers of a board per clue decision budget. The difficulty is rated per cell, so a bigger board needs more
+     * decisions to be rated as hard as a smaller one, and the solution counts may make more of them.
+     */
+    private static final int BUDGET_CELLS = 16;
+
+    /**
+     * Numbers of a board past which the clue decision budget does not grow any more. Every decision propagates over
+     * the whole board, so the counts of bigger boards would take too long.
+     */
+    private static final int MAX_BUDGET_CELLS = 256;
+
+    /**
+     * Number of parts the numbers of a board are split into to rate the problem while its numbers are removed: it is
+     * rated again every time one more part is removed
+     */
+    private static final int RATING_STEPS = 32;
+
+    /**
+     * Maximum number of boards filled for a problem, until one of them can be rated the asked difficulty
+     */
+    private static final int MAX_DIFFICULTY_ATTEMPTS = 4;
+
+    /**
+     * Generator of the seeds of the problems generated without one
+     */
+    private static final Random seeds = new Random();
+
+    /**
+     * Value of a cell of a filled board whose number has been removed
+     */
+    private static final int EMPTIED = Integer.MIN_VALUE;
+
+    /**
+     * Whether the numbers are removed only while the problem keeps a single solution
+     */
+    private static boolean uniqueClues = true;
+
+    /**
+     * Maximum number of branching decisions of the solution count that checks a removal, per {@link #BUDGET_CELLS}
+     * numbers of the board
+     */
+    private static long clueDecisionBudget = DEFAULT_CLUE_DECISION_BUDGET;
+
+    /**
+     * The engine used to fill the board
+     */
+    private static FillEngine fillEngine = FillEngine.WARNSDORFF;
+
+    /**
+     * Sets the engine used to fill the board
+     * @param engine the engine
+     */
+    public static void setFillEngine(FillEngine engine){
+        if (engine == null) throw new IllegalArgumentException("Fill engine cannot be null");
+        fillEngine = engine;
+    }
+
+    /**
+     * Sets whether the numbers are removed only while the problem keeps a single solution
+     * @param unique true to check every removal, false to remove random numbers without checking
+     */
+    public static void setUniqueClues(boolean unique){
+        uniqueClues = unique;
+    }
+
+    /**
+     * Sets the maximum number of branching decisions of the solution count that checks the removal of a number, per
+     * {@link #BUDGET_CELLS} numbers of the board and at least the budget on smaller boards. A count that goes over it
+     * keeps the number, so a lower budget is faster but removes fewer numbers from hard problems.
+     * @param budget the maximum number of decisions per {@link #BUDGET_CELLS} numbers
+     */
+    public static void setClueDecisionBudget(long budget){
+        if (budget < 0) throw new IllegalArgumentException("Budget can not be negative");
+        clueDecisionBudget = budget;
     }
 
-    private static boolean personalized = false;
+    /**
+     * Returns the engine used to fill the board
+     * @return the engine
+     */
+    public static FillEngine getFillEngine(){
+        return fillEngine;
+    }
 
     /**
-     * Sets the boolean value to the given boolean
-     * @param b the value to set the personalized attribute
+     * Draws a new random seed. A caller that wants to be able to generate a problem again draws the seed with this
+     * function and passes it to {@link #generate(Type, int, int, Difficulty, String, boolean, long)}.
+     * @return a seed
      */
-    public static void setPersonalized(boolean b){
-        personalized = b;
+    public static long newSeed(){
+        return seeds.nextLong();
     }
 
     /**
@@ -69,115 +151,220 @@ public class Generator {
      * @param type              A {@link Type} object describing the type of the Hidato (Square, Triangle, Hexagon)
      * @param numRows           The number of rows of the game map.
      * @param numColumns        The number of colums of the game map.
-     * @param difficulty        A {@link Difficulty} object describing the difficulty the game should have.
+     * @param difficulty        A {@link Difficulty} object describing the difficulty the game should have, as
+     *                          measured by {@link DifficultyRater}.
      * @param creatorName       The name of the creator.
      * @param cornerAdjacent    Whether fields sharing a corner should be counted as neighbours or only those sharing a
      *                          face (not relevant for {@link HexagonProblem}s).
      * @return A {@link Problem} object in which the generated Problem is stored.
      */
     public static Problem generate(Type type, int numRows, int numColumns, Difficulty difficulty, String creatorName, boolean cornerAdjacent) {
-        Problem p = null;
+        return generate(type, numRows, numColumns, difficulty, creatorName, cornerAdjacent, newSeed());
+    }
 
-        String[][] map = createBoard(numRows, numColumns);
-        if(!personalized) {
-            map = fillBoard(map, type, cornerAdjacent, difficulty);
+    /**
+     * Generates a new Hidato game like {@link #generate(Type, int, int, Difficulty, String, boolean)} does, taking every
+     * random choice from a generator initialised with the passed seed. The same parameters and seed always give the
+     * same map.
+     *
+     * The numbers are removed until {@link DifficultyRater} rates the problem the asked difficulty. If a board can not
+     * be rated it, because its path is too short or it keeps too many numbers to stay unique, a new board is filled, up
+     * to {@link #MAX_DIFFICULTY_ATTEMPTS} times. If no board can be rated the difficulty the problem closest to it is
+     * returned with its measured difficulty, and the miss is recorded as
+     * {@link GeneratorMetrics.Failure#DIFFICULTY_MISSED}.
+     *
+     * @param type              A {@link Type} object describing the type of the Hidato (Square, Triangle, Hexagon)
+     * @param numRows           The number of rows of the game map.
+     * @param numColumns        The number of colums of the game map.
+     * @param difficulty        A {@link Difficulty} object describing the difficulty the game should have.
+     * @param creatorName       The name of the creator.
+     * @param cornerAdjacent    Whether fields sharing a corner should be counted as neighbours or only those sharing a
+     *                          face (not relevant for {@link HexagonProblem}s).
+     * @param seed              The seed of the random choices.
+     * @return A {@link Problem} object in which the generated Problem is stored.
+     */
+    public static Problem generate(Type type, int numRows, int numColumns, Difficulty difficulty, String creatorName, boolean cornerAdjacent, long seed) {
+        Problem closest = null;
+        Random rand = new Random(seed);
+        GeneratorMetrics metrics = GeneratorMetrics.getGeneratorMetrics();
+        String boardClass = GeneratorMetrics.classOf(type, numRows, numColumns, difficulty, cornerAdjacent);
+
+        for (int attempt = 0; attempt < MAX_DIFFICULTY_ATTEMPTS; attempt++) {
+            long start = System.nanoTime();
+            String[][] map = createBoard(numRows, numColumns, type, cornerAdjacent, rand);
+            metrics.recordPhase(boardClass, GeneratorMetrics.Phase.CREATE_BOARD, System.nanoTime() - start);
+            map = fillBoard(map, type, cornerAdjacent, difficulty, rand);
+            Problem p = newProblem(type, map, numRows, numColumns, difficulty, creatorName, cornerAdjacent);
+            start = System.nanoTime();
+            p = DifficultyRater.rated(p);
+            metrics.recordPhase(boardClass, GeneratorMetrics.Phase.RATE, System.nanoTime() - start);
+            if (p.getDifficulty() == difficulty) return p;
+            if (closest == null || distance(p, difficulty) < distance(closest, difficulty)) closest = p;
         }
+        metrics.recordFailure(boardClass, GeneratorMetrics.Failure.DIFFICULTY_MISSED);
+        return closest;
+    }
+
+    /**
+     * Measures how far the difficulty of a problem is from another difficulty
+     * @param p the problem
+     * @param difficulty the difficulty
+     * @return the number of difficulties between them
+     */
+    private static int distance(Problem p, Difficulty difficulty) {
+        return Math.abs(p.getDifficulty().ordinal() - difficulty.ordinal());
+    }
+
+    /**
+     * Creates a problem of a type
+     * @param type the type of the problem
+     * @param map the map of the problem
+     * @param numRows the number of rows of the map
+     * @param numColumns the number of columns of the map
+     * @param difficulty the difficulty of the problem
+     * @param creatorName the name of the creator
+     * @param cornerAdjacent whether fields sharing a corner are neighbours (not relevant for hexagons)
+     * @return the problem
+     */
+    private static Problem newProblem(Type type, String[][] map, int numRows, int numColumns, Difficulty difficulty,
+                                      String creatorName, boolean cornerAdjacent) {
         switch (type) {
             case Square:
-                p = new SquareProblem(map, numRows, numColumns, difficulty, creatorName, cornerAdjacent);
-                break;
+                return new SquareProblem(map, numRows, numColumns, difficulty, creatorName, cornerAdjacent);
             case Triangle:
-                p = new TriangleProblem(map, numRows, numColumns, difficulty, creatorName, cornerAdjacent);
-                break;
-            case Hexagon:
-                p = new HexagonProblem(map, numRows, numColumns, difficulty, creatorName);
+                return new TriangleProblem(map, numRows, numColumns, difficulty, creatorName, cornerAdjacent);
+            default:
+                return new HexagonProblem(map, numRows, numColumns, difficulty, creatorName);
         }
+    }
 
-        return p;
+    /**
+     * Generates a personalized problem from the map drawn by a user. The map is copied once into the problem and the
+     * numbers on it are kept, the rest of the path is solved and then emptied like
+     * {@link #generatePersonalizedProblem(Problem, List)} does.
+     *
+     * @param type              The type of the Hidato
+     * @param numRows           The number of rows of the game map.
+     * @param numColumns        The number of colums of the game map.
+     * @param difficulty        The difficulty the game should have.
+     * @param creatorName       The name of the creator.
+     * @param cornerAdjacent    Whether fields sharing a corner should be counted as neighbours.
+     * @param map               The map drawn by the user, with "?", "#", "*" and the numbers placed by the user
+     * @param timeoutMillis     The time in milliseconds the solver may spend on the map
+     * @return the problem, or null if it has no solution
+     * @throws TimeoutException the solver could not decide in time whether the map has a solution
+     */
+    public static Problem generatePersonalizedProblem(Type type, int numRows, int numColumns, Difficulty difficulty,
+                                                      String creatorName, boolean cornerAdjacent, String[][] map,
+                                                      long timeoutMillis) throws TimeoutException {
+        String[][] copy = new String[numRows][];
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < numRows; i++) {
+            copy[i] = map[i].clone();
+            for (String cell : copy[i]) {
+                if (!cell.equals("?") && !cell.equals("#") && !cell.equals("*")) numbers.add(cell);
+            }
+        }
+        Problem p = newProblem(type, copy, numRows, numColumns, difficulty, creatorName, cornerAdjacent);
+        return generatePersonalizedProblem(p, numbers, newSeed(), timeoutMillis);
     }
 
-    public static void addToProblem(Problem p, int x, int y, String s){
-        String[][] map = p.getMap();
-        map[x][y] = s;
-        p.updateMap(map);
+    /**
+     * Completes a personalized problem: the map of the problem is solved, then random numbers of the solution are
+     * removed until {@link DifficultyRater} rates the problem its difficulty, keeping the numbers placed by the user.
+     * If no amount of removed numbers is rated the difficulty, the problem gets its measured difficulty and the miss is
+     * recorded as {@link GeneratorMetrics.Failure#DIFFICULTY_MISSED}. The solver may spend {@link #DEFAULT_SOLVE_TIMEOUT_MILLIS} on the map.
+     * @param p the problem with the map of the user, whose map is replaced
+     * @param numbers the numbers placed by the user, which are kept
+     * @return the problem, or null if it has no valid solution
+     * @throws TimeoutException the solver could not decide in time whether the map has a solution
+     */
+    public static Problem generatePersonalizedProblem(Problem p, List<String> numbers) throws TimeoutException {
+        return generatePersonalizedProblem(p, numbers, newSeed(), DEFAULT_SOLVE_TIMEOUT_MILLIS);
     }
-    public static Problem generatePersonalizedProblem(Problem p, List<String> numbers){
+
+    /**
+     * Completes a personalized problem like {@link #generatePersonalizedProblem(Problem, List)} does, choosing the
+     * numbers to remove with a generator initialised with the passed seed. The problem is solved once with a
+     * {@link PortfolioSolver}, whose path links every number with the next one, so the solution is not validated
+     * again.
+     * @param p the problem with the map of the user
+     * @param numbers the numbers placed by the user, which are kept
+     * @param seed the seed of the random choices
+     * @param timeoutMillis the time in milliseconds the solver may spend on the map
+     * @return the problem, or null if it has no valid solution
+     * @throws TimeoutException the solver could not decide in time whether the map has a solution
+     */
+    public static Problem generatePersonalizedProblem(Problem p, List<String> numbers, long seed, long timeoutMillis)
+            throws TimeoutException {
         Problem prob = p;
-        Solver s = new Solver();
-        String[][] map = s.solve(p);
+        GeneratorMetrics metrics = GeneratorMetrics.getGeneratorMetrics();
+        String boardClass = GeneratorMetrics.classOf(p.getType(), p.getNumRows(), p.getNumColumns(),
+                p.getDifficulty(), CellGraph.isCornerAdjacent(p));
+        long start = System.nanoTime();
+        SolveResult result = SolutionCache.getSolutionCache().solve(p, new PortfolioSolver(),
+                new SolveToken(timeoutMillis));
+        metrics.recordPhase(boardClass, GeneratorMetrics.Phase.SOLVE, System.nanoTime() - start);
+        if(result.isStopped()) {
+            metrics.recordFailure(boardClass, GeneratorMetrics.Failure.TIMED_OUT);
+            throw new TimeoutException("The personalized map could not be solved in " + timeoutMillis + " ms");
+        }
+        String[][] map = result.getSolution();
         if(map != null) {
+            start = System.nanoTime();
             map = deepcopyreplace(map);
-            String adj = "-";
-            if (p instanceof TriangleProblem) {
-                TriangleProblem tp = (TriangleProblem) p;
-                if (tp.isCornerAdjacent()) adj = "CA";
-            } else if (p instanceof SquareProblem) {
-                SquareProblem sp = (SquareProblem) p;
-                if (sp.isCornerAdjacent()) adj = "CA";
+            metrics.recordPhase(boardClass, GeneratorMetrics.Phase.COPY, System.nanoTime() - start);
+            Difficulty diff = p.getDifficulty();
+            start = System.nanoTime();
+            map = emptyMapPersonalized(map, p.getType(), CellGraph.isCornerAdjacent(p), diff, numbers,
+                    new Random(seed));
+            metrics.recordPhase(boardClass, GeneratorMetrics.Phase.REMOVE_CLUES, System.nanoTime() - start);
+            prob.updateMap(map);
+            start = System.nanoTime();
+            prob = DifficultyRater.rated(prob);
+            metrics.recordPhase(boardClass, GeneratorMetrics.Phase.RATE, System.nanoTime() - start);
+            if (prob.getDifficulty() != diff) {
+                metrics.recordFailure(boardClass, GeneratorMetrics.Failure.DIFFICULTY_MISSED);
             }
-            if (Validator.validate(map, String.valueOf(p.getType()), adj)) {
-                print(map);
-                Difficulty diff = p.getDifficulty();
-                int max = 0;
-                for (int i = 0; i < numbers.size(); i++) {
-                    int n = Integer.parseInt(numbers.get(i));
-                    if (n > max) max = n;
-                }
-                int take = getNumbersToTake(diff, max);
-                map = emptyMapPersonalized(map, take, numbers);
-                prob.updateMap(map);
-            } else prob = null;
         }
-        else prob = null;
+        else {
+            metrics.recordFailure(boardClass, GeneratorMetrics.Failure.UNSOLVABLE);
+            prob = null;
+        }
         return prob;
     }
 
-    private static String[][] emptyMapPersonalized(String[][] matrix, int take, List<String> numbers) {
-        Random rand = new Random() ;
-        int numbersleft = 0;
+    /**
+     * Removes random numbers from a solved map, except the ones placed by the user, until the problem is rated the
+     * difficulty. The numbers are shuffled and {@link #fitDifficulty} finds how many of them to remove.
+     * @param matrix the solved map, modified
+     * @param type the type of the map
+     * @param adj whether fields sharing a corner are neighbours
+     * @param diff the difficulty of the problem
+     * @param numbers the numbers placed by the user, which are kept
+     * @param rand the random generator
+     * @return the map
+     */
+    private static String[][] emptyMapPersonalized(String[][] matrix, Type type, boolean adj, Difficulty diff,
+                                                   List<String> numbers, Random rand) {
+        Set<String> kept = new HashSet<>(numbers);
+        int columns = matrix[0].length;
+        int[] cells = new int[matrix.length * columns];
+        int count = 0;
         for (int i = 0; i < matrix.length ; i++) {
-            for (int j = 0; j < matrix[0].length; j++) {
+            for (int j = 0; j < columns; j++) {
                 if(!matrix[i][j].equals("?")  &&
                         !matrix[i][j].equals("#")  &&
-                        !matrix[i][j].equals("*")) numbersleft++;
-            }
-        }
-        int took = 0;
-        while(take > 0  && numbersleft - numbers.size() > take){
-            int x = rand.nextInt(matrix.length) ;
-            int y = rand.nextInt(matrix[0].length);
-            if (!matrix[x][y].equals("?")  &&
-                    !matrix[x][y].equals("#")  &&
-                    !matrix[x][y].equals("*")  &&
-                    !inNumbers(numbers, matrix[x][y])){
-                matrix[x][y] = "?";
-                --take;
-                --numbersleft;
-                ++took;
-            }
-        }
-        if(took == 0){
-            for (int i = 0; i < matrix.length ; i++) {
-                for (int j = 0; j < matrix[0].length; j++) {
-                    if(!matrix[i][j].equals("?")  &&
-                            !matrix[i][j].equals("#")  &&
-                            !matrix[i][j].equals("*") &&
-                            !inNumbers(numbers, matrix[i][j])){
-                        matrix[i][j] = "?";
-                    }
-                }
+                        !matrix[i][j].equals("*") &&
+                        !kept.contains(matrix[i][j])) cells[count++] = i * columns + j;
             }
         }
+        for (int k = 0; k < count; k++) pick(cells, k, count, rand);
+        int take = fitDifficulty(CellGraph.compile(matrix, type, adj), cells, 0, count, diff);
+        for (int k = 0; k < take; k++) matrix[cells[k] / columns][cells[k] % columns] = "?";
         return matrix;
     }
 
-    private static boolean inNumbers(List<String> numbers, String s) {
-        for (int i = 0; i < numbers.size(); i++) {
-            if(numbers.get(i).equals(s)) return true;
-        }
-        return false;
-    }
-
     private static int getNumbersToTake(Difficulty diff, int max) {
         int take = 0;
         switch (diff) {
@@ -209,47 +396,134 @@ public class Generator {
      *
      * @param numRows       The number of rows in the matrix
      * @param numColumns    The number of columns in the matrix
+     * @param type          The type of the Hidato, whose adjacency shapes the #
+     * @param adj           Whether fields sharing a corner are neighbours
+     * @param rand          The random generator
      * @return the matrixs from the param filled with some #
      */
-    private static String[][] createBoard(int numRows, int numColumns){
+    private static String[][] createBoard(int numRows, int numColumns, Type type, boolean adj, Random rand){
         String[][] matrix = new String[numRows][numColumns];
         for (int i = 0; i < matrix.length; i++) {
             for (int j = 0; j < matrix[i].length; j++) {
                 matrix[i][j] = "?";
             }
         }
-        if(!personalized) {
-            int maxHashes = (int) (matrix.length * matrix[0].length * .01) + 1;
-
-            Random rand = new Random();
+        int maxHashes = (int) (matrix.length * matrix[0].length * .01) + 1;
+        carveHoles(matrix, CellGraph.compile(matrix, type, adj), maxHashes, rand);
+        return matrix;
+    }
 
-            for (int i = 0; i < maxHashes; ) {
-                int x = rand.nextInt(matrix.length);
-                int y = rand.nextInt(matrix[0].length);
-                if (matrix[x][y].equals("?")) {
-                    if (y == 0 || x == 0 || y == matrix[0].length - 1 || x == matrix.length - 1 ||
-                            matrix[x - 1][y].equals("#") ||
-                            matrix[x + 1][y].equals("#") ||
-                            matrix[x][y - 1].equals("#") ||
-                            matrix[x][y + 1].equals("#")) {
-
-                        matrix[x][y] = "#";
-                        i++;
-
-                        if (!((x - 1 < 0 || isValidNeighbour(matrix, x - 1, y)) &&
-                                (y - 1 < 0 || isValidNeighbour(matrix, x, y - 1)) &&
-                                (x + 1 >= matrix.length || isValidNeighbour(matrix, x + 1, y)) &&
-                                (y + 1 >= matrix[0].length || isValidNeighbour(matrix, x, y + 1)))) {
-                            matrix[x][y] = "?";
-                            i--;
-                        }
+    /**
+     * Carves # into the border of an empty matrix. The # grow in regions: a region starts at a random cell of the
+     * border and takes random cells next to it, following the adjacency of the type of the board, until it has a
+     * random size. A cell is only carved if the playable cells stay connected and at most one of them is left with a
+     * single playable neighbour, where the path that fills the board can start.
+     *
+     * @param matrix    The empty matrix, modified
+     * @param graph     The graph of the empty matrix
+     * @param holes     The number of # to carve
+     * @param rand      The random generator
+     */
+    private static void carveHoles(String[][] matrix, CellGraph graph, int holes, Random rand) {
+        int size = graph.size();
+        int[] degree = new int[size];
+        int[] border = new int[size];
+        int borderCount = 0;
+        int deadEnds = 0;
+        for (int cell = 0; cell < size; cell++) {
+            degree[cell] = graph.degree(cell);
+            if (degree[cell] == 1) deadEnds++;
+            int row = graph.rowOf(cell), column = graph.columnOf(cell);
+            if (row == 0 || column == 0 || row == graph.getNumRows() - 1 || column == graph.getNumColumns() - 1) {
+                border[borderCount++] = cell;
+            }
+        }
+        boolean[] carved = new boolean[size];
+        boolean[] reached = new boolean[size];
+        int[] frontier = new int[size];
+        int[] queue = new int[size];
+        int frontierSize = 0;
+        int borderPicked = 0;
+        int regionLeft = 0;
+        int playable = size;
+
+        while (holes > 0 && playable > 2) {
+            if (frontierSize == 0 || regionLeft == 0) {
+                for (int i = 0; i < frontierSize; i++) reached[frontier[i]] = false;
+                frontierSize = 0;
+                while (frontierSize == 0 && borderPicked < borderCount) {
+                    int cell = pick(border, borderPicked++, borderCount, rand);
+                    if (!carved[cell] && !reached[cell]) {
+                        reached[cell] = true;
+                        frontier[frontierSize++] = cell;
                     }
                 }
+                if (frontierSize == 0) break;
+                regionLeft = 1 + rand.nextInt(holes);
+            }
+            int j = rand.nextInt(frontierSize);
+            int cell = frontier[j];
+            frontier[j] = frontier[--frontierSize];
+
+            int newDeadEnds = deadEnds - (degree[cell] == 1 ? 1 : 0);
+            for (int k = graph.offsets[cell]; k < graph.offsets[cell + 1]; k++) {
+                int v = graph.neighbours[k];
+                if (carved[v]) continue;
+                if (degree[v] == 2) newDeadEnds++;
+                else if (degree[v] == 1) newDeadEnds--;
+            }
+            if (newDeadEnds > 1 || !staysConnected(graph, carved, cell, playable, queue)) continue;
+
+            carved[cell] = true;
+            matrix[graph.rowOf(cell)][graph.columnOf(cell)] = "#";
+            deadEnds = newDeadEnds;
+            playable--;
+            holes--;
+            regionLeft--;
+            for (int k = graph.offsets[cell]; k < graph.offsets[cell + 1]; k++) {
+                int v = graph.neighbours[k];
+                if (carved[v]) continue;
+                degree[v]--;
+                if (!reached[v]) {
+                    reached[v] = true;
+                    frontier[frontierSize++] = v;
+                }
             }
         }
-        return matrix;
     }
 
+    /**
+     * Checks whether the playable cells stay connected without a cell
+     *
+     * @param graph     The graph of the board
+     * @param carved    Whether every cell has been carved
+     * @param cell      The cell to carve
+     * @param playable  The number of cells not carved, including cell
+     * @param queue     A buffer of the size of the graph
+     * @return true if every playable cell but cell can be reached from the others
+     */
+    private static boolean staysConnected(CellGraph graph, boolean[] carved, int cell, int playable, int[] queue) {
+        boolean[] seen = new boolean[graph.size()];
+        seen[cell] = true;
+        int head = 0, tail = 0;
+        for (int k = graph.offsets[cell]; k < graph.offsets[cell + 1] && tail == 0; k++) {
+            if (!carved[graph.neighbours[k]]) {
+                seen[graph.neighbours[k]] = true;
+                queue[tail++] = graph.neighbours[k];
+            }
+        }
+        while (head < tail) {
+            int u = queue[head++];
+            for (int k = graph.offsets[u]; k < graph.offsets[u + 1]; k++) {
+                int v = graph.neighbours[k];
+                if (!carved[v] && !seen[v]) {
+                    seen[v] = true;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return tail == playable - 1;
+    }
 
     /**
      * Fills the matrix from the param with some numbers ready to play.
@@ -258,12 +532,27 @@ public class Generator {
      * @param type the type of case
      * @param adj the type of adjacency
      * @param diff the difficulty
+     * @param rand the random generator
      * @return the matrix filled with numbers.
      */
-    private static String[][] fillBoard(String[][] matrix, Type type, boolean adj, Difficulty diff){
-        int num = 1;
-        String[][] matrixC = deepcopy(matrix);
-        Random rand = new Random();
+    private static String[][] fillBoard(String[][] matrix, Type type, boolean adj, Difficulty diff, Random rand){
+        GeneratorMetrics metrics = GeneratorMetrics.getGeneratorMetrics();
+        String boardClass = GeneratorMetrics.classOf(type, matrix.length, matrix[0].length, diff, adj);
+        long start = System.nanoTime();
+        CellGraph graph = CellGraph.compile(matrix, type, adj);
+        int[] board = graph.getValues();
+        int playable = 0;
+        for (int value : board) {
+            if (value != CellGraph.HOLE) playable++;
+        }
+        int num;
+
+        if (fillEngine == FillEngine.WARNSDORFF) {
+            num = warnsdorffFill(graph, board, rand);
+            metrics.recordFillAttempt(boardClass, (double) num / playable);
+            metrics.recordPhase(boardClass, GeneratorMetrics.Phase.FILL, System.nanoTime() - start);
+            return removeClues(graph, board, num, diff, boardClass, rand);
+        }
 
         int ex = matrix.length;
         int ey = matrix[0].length;
@@ -312,283 +601,115 @@ public class Generator {
         }
 
 
-        while(num < tamtot*perc) {
-            num = 1;
-            matrixC = deepcopy(matrix);
-            int x = rand.nextInt(matrix.length);
-            int y = rand.nextInt(matrix[0].length);
-            while(matrix[x][y].equals("#")){
-                x = rand.nextInt(matrix.length);
-                y = rand.nextInt(matrix[0].length);
-            }
-            ArrayList<Coords> neigh = getNeighbours(matrixC, x,y,type,adj);
-            num = fill(matrixC, x, y, neigh, num, type, adj);
-        }
+        int[] neighbours = new int[maxDegree(graph)];
+        do {
+            System.arraycopy(graph.values, 0, board, 0, board.length);
+            int first = rand.nextInt(board.length);
+            while (board[first] == CellGraph.HOLE) first = rand.nextInt(board.length);
+            num = randomWalk(graph, board, first, neighbours, rand);
+            metrics.recordFillAttempt(boardClass, (double) num / playable);
+        } while (num < tamtot*perc);
+        metrics.recordPhase(boardClass, GeneratorMetrics.Phase.FILL, System.nanoTime() - start);
 
-        int max = num;
-        int take = getNumbersToTake(diff,max);
-        matrix = deepcopyreplace(matrixC) ;
-        return emptyMap(matrix, num, take );
+        return removeClues(graph, board, num, diff, boardClass, rand);
     }
 
     /**
-     * prints the matrix from the param
-     * @param matrix the matrix that is going to be printed
+     * Removes the numbers of a filled board for the difficulty and adds the time it took to the
+     * {@link GeneratorMetrics}
+     * @param graph the graph of the board
+     * @param board the value of every cell of the filled board
+     * @param max the max number of the board
+     * @param diff the difficulty of the Hidato
+     * @param boardClass the board class of the Hidato in the metrics
+     * @param rand the random generator
+     * @return the map of the board without the removed numbers
      */
-    private static void print(String[][] matrix) {
-        String out = "";
-        for (String[] aMatrix : matrix) {
-            out += aMatrix[0];
-            for (int j = 1; j < aMatrix.length; j++) {
-                out += "," + aMatrix[j];
-            }
-            out += "\n";
-        }
-
-        System.out.println(out);
+    private static String[][] removeClues(CellGraph graph, int[] board, int max, Difficulty diff, String boardClass,
+                                          Random rand) {
+        long start = System.nanoTime();
+        int checks = emptyBoard(graph, board, max, diff, rand);
+        String[][] map = toMap(graph, board);
+        GeneratorMetrics metrics = GeneratorMetrics.getGeneratorMetrics();
+        metrics.recordClueChecks(boardClass, checks);
+        metrics.recordPhase(boardClass, GeneratorMetrics.Phase.REMOVE_CLUES, System.nanoTime() - start);
+        return map;
     }
 
     /**
-     * Returns true or false depending if the X,Y point is a valid neighbour
-     * @param matrix the board that contains the X Y point
-     * @param x the X coordinate from the point
-     * @param y the Y coordinate from the point
-     * @return true o false depending of the conditions
+     * Numbers the cells of a random walk on the board, moving every time to a random free neighbour until there is
+     * none. The walk is a loop, so its length is not limited by the thread stack.
+     * @param graph the graph of the board
+     * @param board the value of every cell, indexed like the graph. The cells of the walk get their number.
+     * @param start the first cell of the walk
+     * @param neighbours buffer for the free neighbours of a cell, as long as the highest degree of the graph
+     * @param rand the random generator
+     * @return the number of cells of the walk, which is its highest number
      */
-    private static boolean isValidNeighbour(String[][] matrix, int x, int y) {
-        int c = 0;
-
-        if (matrix[x][y].equals("?")) {
-            if (x-1 >= 0 && matrix[x-1][y].equals("?")) c++;
-            if (y-1 >= 0 && matrix[x][y-1].equals("?")) c++;
-            if (x+1 < matrix.length && matrix[x+1][y].equals("?")) c++;
-            if (y+1 < matrix[0].length && matrix[x][y+1].equals("?")) c++;
+    private static int randomWalk(CellGraph graph, int[] board, int start, int[] neighbours, Random rand) {
+        int num = 0;
+        int cell = start;
+        while (true) {
+            board[cell] = ++num;
+            int count = 0;
+            for (int k = graph.offsets[cell]; k < graph.offsets[cell + 1]; k++) {
+                if (board[graph.neighbours[k]] == CellGraph.FREE) neighbours[count++] = graph.neighbours[k];
+            }
+            if (count == 0) return num;
+            cell = neighbours[rand.nextInt(count)];
         }
-
-        return c >= 2;
     }
 
     /**
-     * Returns an arrayList of Coords that cointains all the available neighbours from the X,Y point.
-     * Depends on the type of case and adjacency.
-     * @param matrix the matrix that cointais de X Y point
-     * @param x the X coordinate from the point
-     * @param y the Y coordinate from the point
-     * @param type the type of case
-     * @param adj the type of adjacency
-     * @return returns an arrayList containing all the neighbours of the X Y point
+     * Returns the highest number of neighbours of a cell of a graph
+     * @param graph the graph
+     * @return the highest degree
      */
-    private static ArrayList<Coords> getNeighbours(String[][] matrix, int x, int y, Type type, boolean adj){
-        ArrayList<Coords> neigh = new ArrayList<>();
-        switch (type){
-            case Triangle:
-                //right
-                if(y+1 < matrix[0].length && matrix[x][y+1].equals("?")){
-                    Coords c = new Coords(x,y+1);
-                    neigh.add(c);
-                }
-                //left
-                if(y-1 >= 0 && matrix[x][y-1].equals("?")){
-                    Coords c = new Coords(x,y-1);
-                    neigh.add(c);
-                }
-                //down
-                if( (y % 2 == 0 && x % 2 == 0) || (y % 2 == 1 && x % 2 == 1) ) {
-                    if (x + 1 < matrix.length && matrix[x+1][y].equals("?")) {
-                        Coords c = new Coords(x+1, y );
-                        neigh.add(c);
-                    }
-                }
-                //up
-                else{
-                    if (x - 1 >= 0 && matrix[x-1][y].equals("?")) {
-                        Coords c = new Coords(x-1, y);
-                        neigh.add(c);
-                    }
-                }
-                if(adj) {
-                    //izq lejos
-                    if(y-2 >= 0 && matrix[x][y-2].equals("?")) {
-                        Coords c = new Coords(x,y-2);
-                        neigh.add(c);
-                    }
-                    //der lejos
-                    if(y+2 < matrix[0].length && matrix[x][y+2].equals("?")) {
-                        Coords c = new Coords(x,y+2);
-                        neigh.add(c);
-                    }
-                    //diag arriba izq
-                    if(x-1 >= 0 && y-1 >= 0 && matrix[x-1][y-1].equals("?")) {
-                        Coords c = new Coords(x-1,y-1);
-                        neigh.add(c);
-                    }
-                    //diag arriba der
-                    if(x-1 >= 0 && y+1 < matrix[0].length && matrix[x-1][y+1].equals("?")) {
-                        Coords c = new Coords(x-1,y+1);
-                        neigh.add(c);
-                    }
-                    //diag abajo izq
-                    if(x+1 < matrix.length && y-1 >= 0 && matrix[x+1][y-1].equals("?")) {
-                        Coords c = new Coords(x+1,y-1);
-                        neigh.add(c);
-                    }
-                    //diag abajo der
-                    if(x+1 < matrix.length && y+1 < matrix[0].length && matrix[x+1][y+1].equals("?")) {
-                        Coords c = new Coords(x+1,y+1);
-                        neigh.add(c);
-                    }
-
-                    if( (y % 2 == 0 && x % 2 == 0) || (y % 2 == 1 && x % 2 == 1) ) {
-                        if (x - 1 >= 0 && matrix[x-1][y].equals("?")) {
-                            Coords c = new Coords(x-1, y);
-                            neigh.add(c);
-                        }
-                        if(x+1 < matrix.length && y-2 >= 0 && matrix[x+1][y-2].equals("?")) {
-                            Coords c = new Coords(x+1,y-2);
-                            neigh.add(c);
-                        }
-                        if(x+1 < matrix.length && y+2 < matrix[0].length && matrix[x+1][y+2].equals("?")) {
-                            Coords c = new Coords(x+1,y+2);
-                            neigh.add(c);
-                        }
-                    }
-                    else{
-                        if (x + 1 < matrix.length && matrix[x+1][y].equals("?")) {
-                            Coords c = new Coords(x+1, y );
-                            neigh.add(c);
-                        }
-                        if(x-1 >= 0 && y-2 >= 0 && matrix[x-1][y-2].equals("?")) {
-                            Coords c = new Coords(x-1,y-2);
-                            neigh.add(c);
-                        }
-                        if(x-1 >= 0 && y+2 < matrix[0].length && matrix[x-1][y+2].equals("?")) {
-                            Coords c = new Coords(x-1,y+2);
-                            neigh.add(c);
-                        }
-                    }
-                }
-                break;
-            case Square:
-                if(x+1 < matrix.length && matrix[x+1][y].equals("?")){
-                    Coords c = new Coords(x+1,y);
-                    neigh.add(c);
-                }
-                if(x-1 >= 0 && matrix[x-1][y].equals("?")){
-                    Coords c = new Coords(x-1,y);
-                    neigh.add(c);
-                }
-                if (y + 1 < matrix[0].length && matrix[x][y + 1].equals("?")) {
-                    Coords c = new Coords(x, y + 1);
-                    neigh.add(c);
-                }
-                if (y - 1 >= 0 && matrix[x][y - 1].equals("?")) {
-                    Coords c = new Coords(x, y - 1);
-                    neigh.add(c);
-                }
-                if (adj){
-                    if(x+1 < matrix.length && y+1 < matrix[0].length && matrix[x+1][y+1].equals("?")){
-                        Coords c = new Coords(x+1,y+1);
-                        neigh.add(c);
-                    }
-                    if(x-1 >= 0  && y-1 >= 0 && matrix[x-1][y-1].equals("?")){
-                        Coords c = new Coords(x-1,y-1);
-                        neigh.add(c);
-                    }
-                    if (y + 1 < matrix[0].length && x-1 >= 0 && matrix[x-1][y + 1].equals("?")) {
-                        Coords c = new Coords(x-1, y + 1);
-                        neigh.add(c);
-                    }
-                    if (y - 1 >= 0 && x+1 < matrix.length && matrix[x+1][y - 1].equals("?")) {
-                        Coords c = new Coords(x+1, y - 1);
-                        neigh.add(c);
-                    }
-                }
-                break;
-            case Hexagon:
-                if(x+1 < matrix.length && matrix[x+1][y].equals("?")){
-                    Coords c = new Coords(x+1,y);
-                    neigh.add(c);
-                }
-                if(x-1 >= 0 && matrix[x-1][y].equals("?")){
-                    Coords c = new Coords(x-1,y);
-                    neigh.add(c);
-                }
-                if (y + 1 < matrix[0].length && matrix[x][y + 1].equals("?")) {
-                    Coords c = new Coords(x, y + 1);
-                    neigh.add(c);
-                }
-                if (y - 1 >= 0 && matrix[x][y - 1].equals("?")) {
-                    Coords c = new Coords(x, y - 1);
-                    neigh.add(c);
-                }
-                if(x%2 == 1) {
-                    if (x + 1 < matrix.length && y + 1 < matrix[0].length && matrix[x + 1][y + 1].equals("?")) {
-                        Coords c = new Coords(x + 1, y + 1);
-                        neigh.add(c);
-                    }
-                    if (y + 1 < matrix[0].length && x - 1 >= 0 && matrix[x - 1][y + 1].equals("?")) {
-                        Coords c = new Coords(x - 1, y + 1);
-                        neigh.add(c);
-                    }
-                }
-                else{
-                    if (x + 1 < matrix.length && y - 1 >= 0 && matrix[x + 1][y - 1].equals("?")) {
-                        Coords c = new Coords(x + 1, y - 1);
-                        neigh.add(c);
-                    }
-                    if (y - 1 >= 0 && x - 1 >= 0 && matrix[x - 1][y - 1].equals("?")) {
-                        Coords c = new Coords(x - 1, y - 1);
-                        neigh.add(c);
-                    }
-                }
-                break;
-
-        }
-        return neigh;
+    private static int maxDegree(CellGraph graph) {
+        int max = 0;
+        for (int i = 0; i < graph.size(); i++) max = Math.max(max, graph.offsets[i + 1] - graph.offsets[i]);
+        return max;
     }
 
     /**
-     * Recursive function that fills the matrix with numbers and returns the maximum one.
-     * @param matrix the matrix that is going to be filled
-     * @param x the X coordinate from the point
-     * @param y the Y coordinate from the point
-     * @param neighbours the arrayList that cointains all the available of X Y
-     * @param num the num that is going to be filled in each recursion
-     * @param type the type of case
-     * @param adj the type of adjacency
-     * @return the maximum number filled
+     * Numbers the cells of a path built by a {@link WarnsdorffWalk}
+     * @param graph the graph of the board
+     * @param board the value of every cell, indexed like the graph. The cells of the path get their number.
+     * @param rand the random generator
+     * @return the number of cells of the path, which is its highest number
      */
-    private static int fill(String[][] matrix, int x, int y, ArrayList<Coords> neighbours, int num, Type type, boolean adj){
-        if (neighbours.size() == 0) {
-            matrix[x][y] = "" + num;
-            return num;
-        }
-        else{
-            matrix[x][y] = "" + num;
-            neighbours = getNeighbours(matrix, x, y, type, adj);
-            Collections.shuffle(neighbours);
-            if (neighbours.size() != 0) {
-                x = neighbours.get(0).getX();
-                y = neighbours.get(0).getY();
-                num += 1;
-            }
-            return fill(matrix, x, y, neighbours, num , type, adj);
-        }
+    private static int warnsdorffFill(CellGraph graph, int[] board, Random rand) {
+        int[] path = new WarnsdorffWalk(graph, rand).build();
+        for (int i = 0; i < path.length; i++) board[path[i]] = i + 1;
+        return path.length;
     }
 
     /**
-     * Makes a copy of the matrix position by position
-     * @param matrix the matrix that is going to be copied
-     * @return the copy of the matrix from the param
+     * Builds the map of a filled board. Like {@link #deepcopyreplace(String[][])} does, the cells left out of the path
+     * become "#" if they are on the border or next to a "#" and "*" otherwise, and the emptied cells become "?".
+     * @param graph the graph of the board
+     * @param board the value of every cell, indexed like the graph: the number of the path cells, {@link #EMPTIED}
+     *              for the emptied ones
+     * @return the map of the board
      */
-    private static String[][] deepcopy(String[][] matrix){
-        String[][] copia = new String[matrix.length][matrix[0].length];
-        for (int i = 0; i < matrix.length; i++) {
-            for (int j = 0; j < matrix[0].length; j++) {
-                copia[i][j] = matrix[i][j];
+    private static String[][] toMap(CellGraph graph, int[] board) {
+        int rows = graph.rowOf(board.length - 1) + 1;
+        int columns = graph.columnOf(board.length - 1) + 1;
+        String[][] map = new String[rows][columns];
+        for (int x = 0; x < rows; x++) {
+            for (int y = 0; y < columns; y++) {
+                int value = board[graph.cellOf(x, y)];
+                if (value == EMPTIED) map[x][y] = "?";
+                else if (value > 0) map[x][y] = String.valueOf(value);
+                else if (value == CellGraph.HOLE || x == 0 || y == 0 || x == rows - 1 || y == columns - 1 ||
+                        graph.values[graph.cellOf(x - 1, y)] == CellGraph.HOLE ||
+                        graph.values[graph.cellOf(x + 1, y)] == CellGraph.HOLE ||
+                        graph.values[graph.cellOf(x, y - 1)] == CellGraph.HOLE ||
+                        graph.values[graph.cellOf(x, y + 1)] == CellGraph.HOLE) map[x][y] = "#";
+                else map[x][y] = "*";
             }
         }
-        return copia;
+        return map;
     }
 
     /**
@@ -622,28 +743,168 @@ public class Generator {
     }
 
     /**
-     * Removes a specific amount of numbers from the Matrix so the game can be played.
-     * The amount of numbers removed depends on a percentage that changed depending on
-     * the difficulty and the max number param
-     * @param matrix The matrix that is going the be empty
-     * @param max The max number of the matrix
-     * @param take the numbers from the matrix that is going to be removed
-     * @return The matrix without the specified numbers
-     */
-    private static String[][] emptyMap(String[][] matrix, int max, int take){
-        Random rand = new Random() ;
-        while(take > 0 ){
-            int x = rand.nextInt(matrix.length) ;
-            int y = rand.nextInt(matrix[0].length);
-            if (!matrix[x][y].equals("?")  &&
-                    !matrix[x][y].equals("#")  &&
-                    !matrix[x][y].equals("*")  &&
-                    !matrix[x][y].equals("1")  &&
-                    !matrix[x][y].equals(""+ max)){
-                matrix[x][y] = "?";
-                --take;
+     * Removes numbers from the board so the game can be played and {@link DifficultyRater} rates it the asked
+     * difficulty. The first and the last number are always kept.
+     *
+     * With unique clues the numbers are tried in a random order and are only removed if the problem still has a
+     * single solution, which is checked with a {@link PropagationSolver} bounded by {@link #clueDecisionBudget}
+     * decisions per {@link #BUDGET_CELLS} numbers, up to {@link #MAX_BUDGET_CELLS} numbers (a count that goes over the
+     * budget keeps the numbers). The numbers are tried in blocks: a block that keeps the solution unique is removed
+     * and the next block is twice as big, a block that does not is kept and tried again in halves, down to single
+     * numbers. A number whose cell is the only empty cell next to the numbers before
+     * and after it is removed without counting. Otherwise the numbers are removed in a random order without any check.
+     *
+     * First the part of the numbers given by {@link #getNumbersToTake(Difficulty, int)} is removed and the problem is
+     * rated. If it is easier than the difficulty, the removal goes on and the problem is rated again every time
+     * another {@link #RATING_STEPS}-th of the numbers is removed, until it is rated the difficulty or harder, every
+     * number has been tried or {@link #MAX_CLUE_CHECKS} counts were done. Then {@link #fitDifficulty} puts back the
+     * last removed numbers the problem does not need to be rated the difficulty.
+     * @param graph the graph of the filled board
+     * @param board the value of every cell, the removed numbers become {@link #EMPTIED}
+     * @param max The max number of the board
+     * @param diff the difficulty of the Hidato
+     * @param rand the random generator
+     * @return the number of solution counts done
+     */
+    private static int emptyBoard(CellGraph graph, int[] board, int max, Difficulty diff, Random rand){
+        int[] order = new int[Math.max(max - 2, 0)];
+        int count = 0;
+        for (int cell = 0; cell < board.length; cell++) {
+            if (board[cell] > 1 && board[cell] < max) order[count++] = cell;
+        }
+        int[] values = new int[board.length];
+        int[] cellOf = new int[max + 1];
+        for (int cell = 0; cell < board.length; cell++) {
+            values[cell] = board[cell] > 0 ? board[cell] : CellGraph.HOLE;
+            if (board[cell] > 0) cellOf[board[cell]] = cell;
+        }
+        CellGraph problem = graph.recompile(values);
+        if (!uniqueClues) {
+            for (int k = 0; k < count; k++) pick(order, k, count, rand);
+            int removed = fitDifficulty(problem, order, 0, count, diff);
+            for (int k = 0; k < removed; k++) board[order[k]] = EMPTIED;
+            return 0;
+        }
+
+        int take = Math.min(getNumbersToTake(diff, max), count);
+        int step = Math.max(1, count / RATING_STEPS);
+        int[] removed = new int[count];
+        int removedCount = 0;
+        int easier = 0;
+        boolean rating = false;
+        PropagationSolver counter = new PropagationSolver();
+        long budget = clueDecisionBudget * Math.min(max, MAX_BUDGET_CELLS) / BUDGET_CELLS;
+        counter.setDecisionBudget(Math.max(clueDecisionBudget, budget));
+        int tried = 0;
+        int shuffled = 0;
+        int block = 1;
+        int checks = 0;
+        while (tried < count && checks < MAX_CLUE_CHECKS) {
+            if (rating ? removedCount - easier >= step : removedCount >= take) {
+                if (rateRemoved(problem, removed, removedCount).compareTo(diff) >= 0) break;
+                rating = true;
+                easier = removedCount;
+            }
+            int size = Math.min(block, count - tried);
+            if (!rating) size = Math.min(size, take - removedCount);
+            for (; shuffled < tried + size; shuffled++) pick(order, shuffled, count, rand);
+            int next = order[tried];
+            if (isForced(problem, values, cellOf, board[next])) {
+                values[next] = CellGraph.FREE;
+                removed[removedCount++] = next;
+                tried++;
+                continue;
+            }
+            for (int i = tried; i < tried + size; i++) values[order[i]] = CellGraph.FREE;
+            checks++;
+            if (counter.countSolutions(problem.withValues(values), 2) == 1 && !counter.isBudgetExceeded()) {
+                for (int i = tried; i < tried + size; i++) removed[removedCount++] = order[i];
+                tried += size;
+                block = size * 2;
+            }
+            else {
+                for (int i = tried; i < tried + size; i++) values[order[i]] = board[order[i]];
+                if (size == 1) tried++;
+                block = Math.max(1, size / 2);
             }
         }
-        return matrix;
+        removedCount = fitDifficulty(problem, removed, easier, removedCount, diff);
+        for (int k = 0; k < removedCount; k++) board[removed[k]] = EMPTIED;
+        return checks;
+    }
+
+    /**
+     * Finds how many numbers of a problem to remove, in the order they are given, for the problem to be rated a
+     * difficulty. Putting back the last removed numbers makes the problem easier, so the amount is found with a binary
+     * search. Putting back numbers never gives the problem a second solution, so every amount keeps the solutions
+     * the problem has with all of them removed.
+     * @param problem the graph of the problem with all its numbers
+     * @param cells the cells of the numbers in the order they are removed
+     * @param easier an amount of numbers already known to be rated easier than the difficulty, or 0
+     * @param count the number of cells
+     * @param diff the difficulty
+     * @return the highest amount of numbers whose problem is rated at most the difficulty. If the problem is rated
+     *         easier with them all removed, count.
+     */
+    private static int fitDifficulty(CellGraph problem, int[] cells, int easier, int count, Difficulty diff) {
+        if (rateRemoved(problem, cells, count).compareTo(diff) <= 0) return count;
+        int low = easier;
+        int high = count;
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (rateRemoved(problem, cells, middle).compareTo(diff) <= 0) low = middle;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Rates a problem with some of its numbers removed
+     * @param problem the graph of the problem with all its numbers
+     * @param cells the cells of the numbers in the order they are removed
+     * @param removed the amount of numbers removed
+     * @return the difficulty of the problem without them, {@link Difficulty#Insane} if it could not be rated
+     */
+    private static Difficulty rateRemoved(CellGraph problem, int[] cells, int removed) {
+        int[] values = problem.getValues();
+        for (int k = 0; k < removed; k++) values[cells[k]] = CellGraph.FREE;
+        Difficulty difficulty = DifficultyRater.rate(problem.withValues(values));
+        return difficulty == null ? Difficulty.Insane : difficulty;
+    }
+
+    /**
+     * Moves a random cell of the ones not picked yet to the next position, one step of a Fisher-Yates shuffle
+     * @param cells the cells, the picked ones first
+     * @param picked the number of cells already picked, which is the position the cell is moved to
+     * @param count the number of cells
+     * @param rand the random generator
+     * @return the picked cell
+     */
+    private static int pick(int[] cells, int picked, int count, Random rand) {
+        int j = picked + rand.nextInt(count - picked);
+        int cell = cells[j];
+        cells[j] = cells[picked];
+        cells[picked] = cell;
+        return cell;
+    }
+
+    /**
+     * Checks whether the cell of a number is the only empty cell next to the cells of the numbers before and after it,
+     * so the number can be removed without the problem getting a second solution
+     * @param graph the graph of the problem
+     * @param values the value of every cell of the problem, {@link CellGraph#FREE} for the removed numbers
+     * @param cellOf the cell of every number of the path
+     * @param number a number of the problem, neither the first nor the last one
+     * @return true if both numbers next to it are given and no other empty cell is next to both of them
+     */
+    private static boolean isForced(CellGraph graph, int[] values, int[] cellOf, int number) {
+        int before = cellOf[number - 1];
+        int after = cellOf[number + 1];
+        if (values[before] != number - 1 || values[after] != number + 1) return false;
+        for (int k = graph.offsets[before]; k < graph.offsets[before + 1]; k++) {
+            int cell = graph.neighbours[k];
+            if (cell != cellOf[number] && values[cell] == CellGraph.FREE && graph.areNeighbours(cell, after)) return false;
+        }
+        return true;
     }
 }
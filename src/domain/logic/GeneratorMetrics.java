@@ -0,0 +1,374 @@
+package domain.logic;
+
+import domain.game.Difficulty;
+import domain.game.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * GeneratorMetrics adds up what the {@link Generator} has done since the application started: how long every phase of
+ * a generation took, how many times the fill of a board had to start again and how much of the board it covered each
+ * time, how many solution counts the removal of the numbers needed and how many personalized problems could not be
+ * generated. The generations are added up for all of them together and for every board class, which is the type, the
+ * difficulty, the size and the adjacency of the problem (for example "Square/Hard/10x10/C").
+ *
+ * The metrics are shared by the whole application and can be used from several threads.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class GeneratorMetrics {
+
+    /**
+     * Phases of a generation
+     */
+    public enum Phase {
+        /**
+         * The empty board is created and its # are carved
+         */
+        CREATE_BOARD,
+        /**
+         * The board is filled with a path, with all its restarts
+         */
+        FILL,
+        /**
+         * Numbers are removed from the filled board
+         */
+        REMOVE_CLUES,
+        /**
+         * The difficulty of the problem is measured
+         */
+        RATE,
+        /**
+         * The numbers placed by the user of a personalized problem are solved
+         */
+        SOLVE,
+        /**
+         * The solution of a personalized problem is copied
+         */
+        COPY
+    }
+
+    /**
+     * Reasons why a problem could not be generated as it was asked
+     */
+    public enum Failure {
+        /**
+         * The numbers placed by the user have no solution
+         */
+        UNSOLVABLE,
+        /**
+         * The solver could not decide in time whether the numbers placed by the user have a solution
+         */
+        TIMED_OUT,
+        /**
+         * No problem that could be generated is rated the asked difficulty, so one of another difficulty was given
+         */
+        DIFFICULTY_MISSED,
+        /**
+         * The generator threw an error while generating a problem for the {@link ProblemPool}
+         */
+        GENERATION_ERROR
+    }
+
+    /**
+     * Self instance of GeneratorMetrics
+     */
+    private static GeneratorMetrics generatorMetrics = new GeneratorMetrics();
+
+    /**
+     * Totals of all the generations
+     */
+    private Summary total = new Summary();
+
+    /**
+     * Totals of the generations of every board class, by the name of the class
+     */
+    private final Map<String, Summary> classes = new TreeMap<>();
+
+    /**
+     * Creator function of the metrics
+     */
+    private GeneratorMetrics() {
+    }
+
+    /**
+     * Getter function of the metrics instance
+     * @return The metrics shared by the application
+     */
+    public static GeneratorMetrics getGeneratorMetrics() {
+        return generatorMetrics;
+    }
+
+    /**
+     * Adds the time of a phase to the metrics
+     * @param boardClass The board class of the problem, as returned by {@link #classOf}
+     * @param phase The phase
+     * @param nanos The time the phase took, in nanoseconds
+     */
+    synchronized void recordPhase(String boardClass, Phase phase, long nanos) {
+        total.addPhase(phase, nanos);
+        summaryOf(boardClass).addPhase(phase, nanos);
+    }
+
+    /**
+     * Adds an attempt to fill a board to the metrics
+     * @param boardClass The board class of the problem, as returned by {@link #classOf}
+     * @param coverage The part of the playable cells covered by the path, from 0 to 1
+     */
+    synchronized void recordFillAttempt(String boardClass, double coverage) {
+        total.addFillAttempt(coverage);
+        summaryOf(boardClass).addFillAttempt(coverage);
+    }
+
+    /**
+     * Adds the solution counts done to remove the numbers of a board to the metrics
+     * @param boardClass The board class of the problem, as returned by {@link #classOf}
+     * @param checks The number of solution counts
+     */
+    synchronized void recordClueChecks(String boardClass, long checks) {
+        total.clueChecks += checks;
+        summaryOf(boardClass).clueChecks += checks;
+    }
+
+    /**
+     * Adds a problem that could not be generated as it was asked to the metrics
+     * @param boardClass The board class of the problem, as returned by {@link #classOf}
+     * @param failure Why it could not be generated
+     */
+    synchronized void recordFailure(String boardClass, Failure failure) {
+        total.failures[failure.ordinal()]++;
+        summaryOf(boardClass).failures[failure.ordinal()]++;
+    }
+
+    /**
+     * Returns the totals of all the generations
+     * @return A copy of the totals
+     */
+    public synchronized Summary getTotal() {
+        return total.copy();
+    }
+
+    /**
+     * Returns the names of the board classes that have been generated
+     * @return The names of the classes, in alphabetical order
+     */
+    public synchronized List<String> getBoardClasses() {
+        return new ArrayList<>(classes.keySet());
+    }
+
+    /**
+     * Returns the totals of the generations of a board class
+     * @param boardClass The name of a class, as returned by {@link #getBoardClasses()}
+     * @return A copy of the totals, or null if no problem of the class has been generated
+     */
+    public synchronized Summary getSummary(String boardClass) {
+        Summary summary = classes.get(boardClass);
+        return summary == null ? null : summary.copy();
+    }
+
+    /**
+     * Forgets all the generations
+     */
+    public synchronized void reset() {
+        total = new Summary();
+        classes.clear();
+    }
+
+    /**
+     * Returns the board class of a problem
+     * @param type The type of the problem
+     * @param numRows The number of rows of the problem
+     * @param numColumns The number of columns of the problem
+     * @param difficulty The difficulty asked for the problem
+     * @param cornerAdjacent Whether fields sharing a corner are neighbours (not relevant for hexagons)
+     * @return The type, the difficulty, the size and the adjacency ("C" or "CA"), separated by "/"
+     */
+    public static String classOf(Type type, int numRows, int numColumns, Difficulty difficulty,
+                                 boolean cornerAdjacent) {
+        boolean ca = cornerAdjacent && type != Type.Hexagon;
+        return type + "/" + difficulty + "/" + numRows + "x" + numColumns + "/" + (ca ? "CA" : "C");
+    }
+
+    /**
+     * Returns the totals of a board class, creating them if needed
+     * @param boardClass The name of the class
+     * @return The totals of the class
+     */
+    private Summary summaryOf(String boardClass) {
+        return classes.computeIfAbsent(boardClass, k -> new Summary());
+    }
+
+    /**
+     * Totals of a group of generations
+     */
+    public static class Summary {
+        /**
+         * Number of times every phase was done, indexed by {@link Phase#ordinal()}
+         */
+        private final long[] counts = new long[Phase.values().length];
+
+        /**
+         * Sum of the times of every phase, in nanoseconds
+         */
+        private final long[] totalNanos = new long[Phase.values().length];
+
+        /**
+         * Time of the slowest run of every phase, in nanoseconds
+         */
+        private final long[] maxNanos = new long[Phase.values().length];
+
+        /**
+         * Number of attempts to fill a board
+         */
+        private long fillAttempts;
+
+        /**
+         * Sum of the coverages of the attempts to fill a board
+         */
+        private double coverageSum;
+
+        /**
+         * Lowest coverage of an attempt to fill a board
+         */
+        private double minCoverage = 1;
+
+        /**
+         * Number of solution counts done to remove numbers
+         */
+        private long clueChecks;
+
+        /**
+         * Number of personalized problems that could not be generated for every reason, indexed by
+         * {@link Failure#ordinal()}
+         */
+        private final long[] failures = new long[Failure.values().length];
+
+        /**
+         * Adds a run of a phase to the totals
+         * @param phase The phase
+         * @param nanos The time it took, in nanoseconds
+         */
+        private void addPhase(Phase phase, long nanos) {
+            counts[phase.ordinal()]++;
+            totalNanos[phase.ordinal()] += nanos;
+            maxNanos[phase.ordinal()] = Math.max(maxNanos[phase.ordinal()], nanos);
+        }
+
+        /**
+         * Adds an attempt to fill a board to the totals
+         * @param coverage The part of the playable cells covered
+         */
+        private void addFillAttempt(double coverage) {
+            fillAttempts++;
+            coverageSum += coverage;
+            minCoverage = Math.min(minCoverage, coverage);
+        }
+
+        /**
+         * Copies the totals
+         * @return A copy that does not change when more generations are added
+         */
+        private Summary copy() {
+            Summary copy = new Summary();
+            System.arraycopy(counts, 0, copy.counts, 0, counts.length);
+            System.arraycopy(totalNanos, 0, copy.totalNanos, 0, totalNanos.length);
+            System.arraycopy(maxNanos, 0, copy.maxNanos, 0, maxNanos.length);
+            copy.fillAttempts = fillAttempts;
+            copy.coverageSum = coverageSum;
+            copy.minCoverage = minCoverage;
+            copy.clueChecks = clueChecks;
+            System.arraycopy(failures, 0, copy.failures, 0, failures.length);
+            return copy;
+        }
+
+        /**
+         * Returns how many times a phase was done
+         * @param phase A phase
+         * @return The number of runs of the phase
+         */
+        public long getCount(Phase phase) {
+            return counts[phase.ordinal()];
+        }
+
+        /**
+         * Returns the total time of a phase
+         * @param phase A phase
+         * @return The sum of the times of its runs, in nanoseconds
+         */
+        public long getTotalNanos(Phase phase) {
+            return totalNanos[phase.ordinal()];
+        }
+
+        /**
+         * Returns the mean time of a phase
+         * @param phase A phase
+         * @return The mean time of its runs in nanoseconds, 0 if it was not done
+         */
+        public long getMeanNanos(Phase phase) {
+            long count = counts[phase.ordinal()];
+            return count == 0 ? 0 : totalNanos[phase.ordinal()] / count;
+        }
+
+        /**
+         * Returns the time of the slowest run of a phase
+         * @param phase A phase
+         * @return The time in nanoseconds
+         */
+        public long getMaxNanos(Phase phase) {
+            return maxNanos[phase.ordinal()];
+        }
+
+        /**
+         * Getter function for the fill attempts
+         * @return The number of attempts to fill a board
+         */
+        public long getFillAttempts() {
+            return fillAttempts;
+        }
+
+        /**
+         * Returns how many times the fill of a board had to start again
+         * @return The number of attempts that were not the first of their board
+         */
+        public long getFillRestarts() {
+            return fillAttempts - counts[Phase.FILL.ordinal()];
+        }
+
+        /**
+         * Returns the mean coverage of the attempts to fill a board
+         * @return The mean part of the playable cells covered, from 0 to 1, 0 if there were no attempts
+         */
+        public double getMeanCoverage() {
+            return fillAttempts == 0 ? 0 : coverageSum / fillAttempts;
+        }
+
+        /**
+         * Returns the lowest coverage of an attempt to fill a board
+         * @return The lowest part of the playable cells covered, from 0 to 1, 0 if there were no attempts
+         */
+        public double getMinCoverage() {
+            return fillAttempts == 0 ? 0 : minCoverage;
+        }
+
+        /**
+         * Getter function for the clue checks
+         * @return The number of solution counts done to remove numbers
+         */
+        public long getClueChecks() {
+            return clueChecks;
+        }
+
+        /**
+         * Returns how many personalized problems could not be generated for a reason
+         * @param failure A reason
+         * @return The number of personalized problems that failed for it
+         */
+        public long getFailures(Failure failure) {
+            return failures[failure.ordinal()];
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package domain.logic;
+
+import domain.game.Problem;
+
+/**
+ * HidatoSolver is the common interface of the solver backends. {@link Solver} searches paths with backtracking and
+ * {@link PropagationSolver} propagates the constraints between consecutive numbers before branching.
+ *
+ * A solver is used by one thread at a time; the state of the last call is kept until the next one.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public interface HidatoSolver {
+
+    /**
+     * Solves a problem
+     * @param problem Problem given by the controller
+     * @return The solved map, or null if the problem has no solution
+     */
+    String[][] solve(Problem problem);
+
+    /**
+     * Solves a problem, giving up once the passed token expires
+     * @param problem Problem given by the controller
+     * @param token Token that stops the search
+     * @return The solved map, or the reason why there is none
+     */
+    SolveResult solve(Problem problem, SolveToken token);
+
+    /**
+     * Counts the solutions of a problem, stopping as soon as the passed number of solutions has been found
+     * @param problem Problem given by the controller
+     * @param limit Number of solutions after which the search stops, at least 1
+     * @return The number of solutions found, at most limit
+     */
+    int countSolutions(Problem problem, int limit);
+
+    /**
+     * Counts the solutions of a problem like {@link #countSolutions(Problem, int)}, giving up once the passed token
+     * expires
+     * @param problem Problem given by the controller
+     * @param limit Number of solutions after which the search stops, at least 1
+     * @param token Token that stops the search
+     * @return The number of solutions found, at most limit, or -1 if the token expired before the count was complete
+     */
+    int countSolutions(Problem problem, int limit, SolveToken token);
+
+    /**
+     * Returns the map found by the last call: the solution after a successful solve, or the first solution found by
+     * {@link #countSolutions(Problem, int)}
+     * @return The map with the current number of every cell
+     */
+    String[][] printProblem();
+}
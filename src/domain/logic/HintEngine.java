@@ -0,0 +1,202 @@
+package domain.logic;
+
+import domain.game.Problem;
+import domain.game.Type;
+
+import java.util.Arrays;
+
+/**
+ * HintEngine answers the hints and solutions asked during an attempt. It keeps the last solution found by the
+ * {@link Solver} and, as long as the numbers placed by the player agree with it, answers from that solution instead
+ * of solving the whole board again. Only when the board contradicts the kept solution, or has a different shape, the
+ * board is looked up in the {@link SolutionCache} and, if it is not there, solved from scratch.
+ *
+ * A kept solution that agrees with every number of the board is a solution of the board, so the answers are the same
+ * the {@link Solver} would give, apart from which solution is picked when there are several.
+ *
+ * The class the following global variables:
+ * 1 HidatoSolver called solver used when the board has to be solved again
+ * 1 String matrix called solution with the kept solution
+ * 2 int arrays called rowOf and columnOf with the position of every number of the kept solution
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class HintEngine {
+
+    /**
+     * Solver used when the kept solution can not be reused
+     */
+    private final HidatoSolver solver;
+
+    /**
+     * Type of the board of the kept solution
+     */
+    private Type type;
+
+    /**
+     * Whether fields sharing a corner are neighbours in the board of the kept solution
+     */
+    private boolean cornerAdjacent;
+
+    /**
+     * Kept solution, or null if there is none
+     */
+    private String[][] solution;
+
+    /**
+     * Row of every number of the kept solution, -1 for numbers that are not placed
+     */
+    private int[] rowOf;
+
+    /**
+     * Column of every number of the kept solution, -1 for numbers that are not placed
+     */
+    private int[] columnOf;
+
+    /**
+     * Number of requests answered with the kept solution
+     */
+    private int reused;
+
+    /**
+     * Number of requests that needed a new search, because the board was neither kept nor cached
+     */
+    private int solved;
+
+    /**
+     * Creates a hint engine using a sequential solver
+     */
+    public HintEngine() {
+        this(new Solver());
+    }
+
+    /**
+     * Creates a hint engine using the passed solver
+     * @param solver Solver used when the board has to be solved again
+     */
+    public HintEngine(HidatoSolver solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * Solves a board, reusing the kept solution if the board agrees with it
+     * @param problem Board with the numbers placed by the player
+     * @param token Token that stops the search if the board has to be solved again
+     * @return The solved map, or the reason why there is none
+     */
+    public SolveResult solve(Problem problem, SolveToken token) {
+        if (agreesWithSolution(problem)) {
+            reused++;
+            return new SolveResult(SolveResult.Status.SOLVED, copy(solution));
+        }
+        String[][] cached = SolutionCache.getSolutionCache().get(problem);
+        if (cached != null) {
+            keep(problem, cached);
+            return new SolveResult(SolveResult.Status.SOLVED, copy(cached));
+        }
+        solved++;
+        SolveResult result = solver.solve(problem, token);
+        if (result.isSolved()) {
+            keep(problem, copy(result.getSolution()));
+            SolutionCache.getSolutionCache().put(problem, result.getSolution());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the position of a number in the kept solution
+     * @param number A number of the board
+     * @return The row and column of the number, or null if it is not placed in the kept solution
+     */
+    public int[] positionOf(int number) {
+        if (solution == null || number < 1 || number >= rowOf.length || rowOf[number] < 0) return null;
+        return new int[]{rowOf[number], columnOf[number]};
+    }
+
+    /**
+     * Forgets the kept solution, so the next request solves the board from scratch
+     */
+    public void reset() {
+        solution = null;
+        rowOf = null;
+        columnOf = null;
+    }
+
+    /**
+     * Getter function for the number of requests answered with the kept solution
+     * @return The number of requests that did not need a search
+     */
+    public int getReused() {
+        return reused;
+    }
+
+    /**
+     * Getter function for the number of requests that needed a search
+     * @return The number of requests solved from scratch
+     */
+    public int getSolved() {
+        return solved;
+    }
+
+    /**
+     * Checks whether the kept solution is a solution of the board: the board has the same shape and every number
+     * placed on it is in the same field of the kept solution.
+     * @param problem Board with the numbers placed by the player
+     * @return true if the kept solution can be reused
+     */
+    private boolean agreesWithSolution(Problem problem) {
+        if (solution == null || problem.getType() != type || CellGraph.isCornerAdjacent(problem) != cornerAdjacent)
+            return false;
+        String[][] map = problem.getMap();
+        if (map.length != solution.length || map[0].length != solution[0].length) return false;
+        for (int r = 0; r < map.length; r++) {
+            for (int c = 0; c < map[r].length; c++) {
+                String cell = map[r][c];
+                String kept = solution[r][c];
+                if (cell.equals("?")) {
+                    if (kept.equals("#") || kept.equals("*")) return false;
+                }
+                else if (!cell.equals(kept)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keeps a solution and indexes the position of its numbers
+     * @param problem Board that was solved
+     * @param map Solution of the board
+     */
+    private void keep(Problem problem, String[][] map) {
+        type = problem.getType();
+        cornerAdjacent = CellGraph.isCornerAdjacent(problem);
+        solution = map;
+        int rows = map.length;
+        int columns = map[0].length;
+        rowOf = new int[rows * columns + 1];
+        columnOf = new int[rows * columns + 1];
+        Arrays.fill(rowOf, -1);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                String cell = map[r][c];
+                if (cell.equals("#") || cell.equals("*")) continue;
+                int number = Integer.parseInt(cell);
+                if (number > 0 && number < rowOf.length) {
+                    rowOf[number] = r;
+                    columnOf[number] = c;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies a map, so the kept solution can not be modified by the callers
+     * @param map A map
+     * @return A copy of the map
+     */
+    private static String[][] copy(String[][] map) {
+        String[][] copy = new String[map.length][];
+        for (int r = 0; r < map.length; r++) copy[r] = map[r].clone();
+        return copy;
+    }
+}
@@ -0,0 +1,557 @@
+package domain.logic;
+
+import domain.game.Problem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MeetInTheMiddleSolver splits the path into the gaps between consecutive given numbers. The gaps only depend on each
+ * other through the cells they use, so the paths of every gap are enumerated on their own and combined afterwards:
+ *
+ * 1. For a gap from the given number a to the given number b, the paths of half the length are enumerated forwards
+ *    from the cell of a and backwards from the cell of b, and every pair of halves that end in the same cell and do
+ *    not share any other cell is a path of the gap. For a gap of k steps with about d choices per step this costs
+ *    about d^(k/2) per side instead of d^k.
+ * 2. The gaps are combined with a backtracking that picks one path per gap, starting with the gap with the fewest
+ *    paths, so that no cell is used twice.
+ *
+ * If the number 1 is not given the numbers before the first given one are enumerated backwards from it.
+ *
+ * The number of paths of a gap grows quickly with its length, so the enumeration and the whole search have limits.
+ * When a limit is reached the problem is handed to the {@link Solver} instead.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class MeetInTheMiddleSolver implements HidatoSolver {
+
+    /**
+     * Maximum number of half paths enumerated from one end of a gap
+     */
+    private static final int MAX_HALF_PATHS = 1 << 14;
+
+    /**
+     * Maximum number of paths of a gap
+     */
+    private static final int MAX_GAP_PATHS = 1 << 14;
+
+    /**
+     * Maximum number of steps of the whole search, enumeration and combination together. Past it the search is
+     * unlikely to beat the {@link Solver}, which takes over.
+     */
+    private static final int MAX_STEPS = 1 << 19;
+
+    /**
+     * The token is checked whenever the number of steps is a multiple of this mask + 1
+     */
+    private static final int STOP_CHECK_MASK = 4095;
+
+    /**
+     * Compiled adjacency graph of the problem being solved
+     */
+    private CellGraph graph;
+
+    /**
+     * Initial value of every cell
+     */
+    private int[] cells;
+
+    /**
+     * Number of longs of a bitset over the cells
+     */
+    private int words;
+
+    /**
+     * Marks of the cells of the path being enumerated
+     */
+    private boolean[] onPath;
+
+    /**
+     * Marks used to check that two halves do not share cells, a cell is marked if its mark equals {@link #stamp}
+     */
+    private int[] mark;
+
+    /**
+     * Current mark stamp
+     */
+    private int stamp;
+
+    /**
+     * Token that stops the current search
+     */
+    private SolveToken token;
+
+    /**
+     * Whether the current search was stopped by the token
+     */
+    private boolean stopped;
+
+    /**
+     * Whether a limit was reached, in which case the {@link Solver} is used
+     */
+    private boolean overflow;
+
+    /**
+     * Number of steps done, used to check the token from time to time
+     */
+    private int steps;
+
+    /**
+     * Values of the first solution found, or null
+     */
+    private int[] values;
+
+    /**
+     * Solver that took over the last problem, or null
+     */
+    private Solver fallback;
+
+    /**
+     * Solves the problem given by the controller
+     * @param problem Problem given by the controller
+     * @return The solved map, or null if the problem has no solution
+     */
+    @Override
+    public String[][] solve(Problem problem) {
+        return solve(problem, new SolveToken()).getSolution();
+    }
+
+    /**
+     * Solves the problem given by the controller, giving up once the passed token expires
+     * @param problem Problem given by the controller
+     * @param token Token that stops the search
+     * @return The solved map, or the reason why there is none
+     */
+    @Override
+    public SolveResult solve(Problem problem, SolveToken token) {
+        int found = search(problem, token, 1);
+        if (fallback != null) return fallback.solve(problem, token);
+        if (found > 0) return new SolveResult(SolveResult.Status.SOLVED, printProblem());
+        if (stopped) {
+            SolveResult.Status status = token.isCancelled() ? SolveResult.Status.CANCELLED : SolveResult.Status.TIMED_OUT;
+            return new SolveResult(status, null);
+        }
+        return new SolveResult(SolveResult.Status.NO_SOLUTION, null);
+    }
+
+    /**
+     * Counts the solutions of a problem, stopping as soon as the passed number of solutions has been found
+     * @param problem Problem given by the controller
+     * @param limit Number of solutions after which the search stops, at least 1
+     * @return The number of solutions found, at most limit
+     */
+    @Override
+    public int countSolutions(Problem problem, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("Limit must be at least 1");
+        int found = search(problem, new SolveToken(), limit);
+        if (fallback != null) return fallback.countSolutions(problem, limit);
+        return found;
+    }
+
+    /**
+     * Counts the solutions of a problem like {@link #countSolutions(Problem, int)}, giving up once the passed token
+     * expires
+     * @param problem Problem given by the controller
+     * @param limit Number of solutions after which the search stops, at least 1
+     * @param token Token that stops the search
+     * @return The number of solutions found, at most limit, or -1 if the token expired before the count was complete
+     */
+    @Override
+    public int countSolutions(Problem problem, int limit, SolveToken token) {
+        if (limit < 1) throw new IllegalArgumentException("Limit must be at least 1");
+        int found = search(problem, token, limit);
+        if (fallback != null) return fallback.countSolutions(problem, limit, token);
+        return stopped && found < limit ? -1 : found;
+    }
+
+    /**
+     * Prints the first solution found by the last call
+     * @return The map with the number of every cell
+     */
+    @Override
+    public String[][] printProblem() {
+        if (fallback != null) return fallback.printProblem();
+        return graph.toMap(values);
+    }
+
+    /**
+     * Returns whether the last problem was handed to the {@link Solver} because a limit was reached
+     * @return true if the {@link Solver} was used
+     */
+    public boolean usedFallback() {
+        return fallback != null;
+    }
+
+    /**
+     * Enumerates the paths of every gap and combines them. Sets {@link #fallback} if a limit is reached.
+     * @param problem Problem to solve
+     * @param token Token that stops the search
+     * @param limit Number of solutions after which the search stops
+     * @return The number of solutions found, at most limit
+     */
+    private int search(Problem problem, SolveToken token, int limit) {
+        this.token = token;
+        stopped = false;
+        overflow = false;
+        steps = 0;
+        values = null;
+        fallback = null;
+        graph = CellGraph.compile(problem);
+        cells = graph.getValues();
+        words = (cells.length + 63) >>> 6;
+        onPath = new boolean[cells.length];
+        mark = new int[cells.length];
+        stamp = 0;
+
+        int max = 0;
+        int free = 0;
+        for (int v : cells) {
+            if (v > max) max = v;
+            if (v == CellGraph.FREE) free++;
+        }
+        if (max == 0) return 0;
+        int[] givenCell = new int[max + 1];
+        Arrays.fill(givenCell, -1);
+        int givens = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (cells[i] > 0) {
+                if (givenCell[cells[i]] < 0) givens++;
+                givenCell[cells[i]] = i;
+            }
+        }
+        if (free < max - givens) return 0;
+        if (max == 1) {
+            values = cells.clone();
+            return 1;
+        }
+
+        List<Gap> gaps = new ArrayList<>();
+        int first = 1;
+        while (givenCell[first] < 0) first++;
+        if (first > 1) {
+            Gap head = headGap(givenCell[first], first);
+            if (head == null) return finish(0);
+            gaps.add(head);
+        }
+        int previous = first;
+        for (int n = first + 1; n <= max; n++) {
+            if (givenCell[n] < 0) continue;
+            Gap gap = gap(previous, givenCell[previous], n, givenCell[n]);
+            if (gap == null) return finish(0);
+            if (gap.paths.isEmpty()) return 0;
+            gaps.add(gap);
+            previous = n;
+        }
+        for (Gap gap : gaps) {
+            if (gap.paths.isEmpty()) return 0;
+        }
+        return finish(combine(gaps, limit));
+    }
+
+    /**
+     * Hands the problem to the {@link Solver} if a limit was reached
+     * @param found The number of solutions found
+     * @return The number of solutions found
+     */
+    private int finish(int found) {
+        if (overflow && !stopped) fallback = new Solver();
+        return found;
+    }
+
+    /**
+     * Enumerates the paths of the gap between two given numbers, meeting in the middle
+     * @param a The lower given number
+     * @param from The cell of a
+     * @param b The next given number
+     * @param to The cell of b
+     * @return The gap with all its paths, or null if a limit was reached or the search was stopped
+     */
+    private Gap gap(int a, int from, int b, int to) {
+        int length = b - a;
+        Gap gap = new Gap(a);
+        if (length == 1) {
+            if (graph.areNeighbours(from, to)) gap.add(new int[0], words);
+            return gap;
+        }
+        boolean bipartite = graph.isBipartite();
+        int[] toDistance = graph.distancesFrom(to, length);
+        int[] fromDistance = graph.distancesFrom(from, length);
+        int half = length / 2;
+        List<int[]> forward = halfPaths(from, half, toDistance, length, bipartite);
+        if (forward == null) return null;
+        List<int[]> backward = halfPaths(to, length - half, fromDistance, length, bipartite);
+        if (backward == null) return null;
+
+        Map<Integer, List<int[]>> byEnd = new HashMap<>();
+        for (int[] path : forward) byEnd.computeIfAbsent(path[path.length - 1], k -> new ArrayList<>()).add(path);
+        for (int[] back : backward) {
+            List<int[]> matches = byEnd.get(back[back.length - 1]);
+            if (matches == null) continue;
+            nextStamp();
+            for (int i = 0; i < back.length - 1; i++) mark[back[i]] = stamp;
+            for (int[] front : matches) {
+                if (!isStepAllowed()) return null;
+                boolean disjoint = true;
+                for (int i = 0; i < front.length - 1 && disjoint; i++) disjoint = mark[front[i]] != stamp;
+                if (!disjoint) continue;
+                int[] path = new int[length - 1];
+                System.arraycopy(front, 0, path, 0, front.length);
+                for (int i = 0; i < back.length - 1; i++) path[length - 2 - i] = back[i];
+                if (gap.paths.size() >= MAX_GAP_PATHS) {
+                    overflow = true;
+                    return null;
+                }
+                gap.add(path, words);
+            }
+        }
+        return gap;
+    }
+
+    /**
+     * Enumerates the numbers before the first given number, walking backwards from it
+     * @param from The cell of the first given number
+     * @param first The first given number
+     * @return The gap with all its paths, ordered from the number 1, or null if a limit was reached or the search
+     *         was stopped
+     */
+    private Gap headGap(int from, int first) {
+        List<int[]> backward = halfPaths(from, first - 1, null, 0, false);
+        if (backward == null) return null;
+        Gap gap = new Gap(0);
+        for (int[] back : backward) {
+            int[] path = new int[back.length];
+            for (int i = 0; i < back.length; i++) path[back.length - 1 - i] = back[i];
+            gap.add(path, words);
+        }
+        return gap;
+    }
+
+    /**
+     * Enumerates the paths of empty cells of a given length starting next to a cell. The i-th cell of a path has to be
+     * at a distance of at most total - i from the goal (with the same parity in bipartite graphs).
+     * @param start The cell where the paths start, which is not part of them
+     * @param length The number of cells of the paths
+     * @param goalDistance The distance of every cell to the goal, or null to not prune
+     * @param total The number of steps from the start to the goal
+     * @param bipartite Whether the parity of the distances is checked
+     * @return The paths, or null if there are too many or the search was stopped
+     */
+    private List<int[]> halfPaths(int start, int length, int[] goalDistance, int total, boolean bipartite) {
+        List<int[]> result = new ArrayList<>();
+        int[] offsets = graph.offsets;
+        int[] neighbours = graph.neighbours;
+        int[] path = new int[length + 1];
+        int[] cursor = new int[length + 1];
+        path[0] = start;
+        cursor[0] = offsets[start];
+        int depth = 0;
+        while (depth >= 0) {
+            if (!isStepAllowed()) return null;
+            int cell = path[depth];
+            int chosen = -1;
+            while (cursor[depth] < offsets[cell + 1]) {
+                int x = neighbours[cursor[depth]++];
+                if (cells[x] != CellGraph.FREE || onPath[x]) continue;
+                if (goalDistance != null) {
+                    int left = total - depth - 1;
+                    int d = goalDistance[x];
+                    if (d > left || (bipartite && ((left - d) & 1) != 0)) continue;
+                }
+                chosen = x;
+                break;
+            }
+            if (chosen < 0) {
+                if (depth > 0) onPath[cell] = false;
+                depth--;
+                continue;
+            }
+            if (depth + 1 == length) {
+                if (result.size() >= MAX_HALF_PATHS) {
+                    overflow = true;
+                    clearPath(path, depth);
+                    return null;
+                }
+                int[] found = Arrays.copyOfRange(path, 1, length + 1);
+                found[length - 1] = chosen;
+                result.add(found);
+                continue;
+            }
+            depth++;
+            path[depth] = chosen;
+            cursor[depth] = offsets[chosen];
+            onPath[chosen] = true;
+        }
+        return result;
+    }
+
+    /**
+     * Combines the paths of the gaps so that no cell is used twice
+     * @param gaps The gaps with their paths
+     * @param limit Number of solutions after which the search stops
+     * @return The number of combinations found, at most limit
+     */
+    private int combine(List<Gap> gaps, int limit) {
+        gaps.sort((x, y) -> Integer.compare(x.paths.size(), y.paths.size()));
+        int count = gaps.size();
+        int[] chosen = new int[count];
+        int[] cursor = new int[count];
+        long[] used = new long[words];
+        int found = 0;
+        int depth = 0;
+        cursor[0] = 0;
+        while (depth >= 0) {
+            if (!isStepAllowed()) return found;
+            Gap gap = gaps.get(depth);
+            int next = -1;
+            while (cursor[depth] < gap.paths.size()) {
+                int i = cursor[depth]++;
+                if (isDisjoint(used, gap.sets.get(i))) {
+                    next = i;
+                    break;
+                }
+            }
+            if (next < 0) {
+                depth--;
+                if (depth >= 0) toggle(used, gaps.get(depth).sets.get(chosen[depth]));
+                continue;
+            }
+            chosen[depth] = next;
+            toggle(used, gap.sets.get(next));
+            if (depth + 1 < count && !othersStillFit(gaps, depth + 1, used)) {
+                toggle(used, gap.sets.get(next));
+                continue;
+            }
+            if (depth + 1 < count) {
+                depth++;
+                cursor[depth] = 0;
+                continue;
+            }
+            if (found == 0) {
+                values = cells.clone();
+                for (int g = 0; g < count; g++) {
+                    Gap placed = gaps.get(g);
+                    int[] path = placed.paths.get(chosen[g]);
+                    for (int i = 0; i < path.length; i++) values[path[i]] = placed.start + 1 + i;
+                }
+            }
+            if (++found >= limit) return found;
+            toggle(used, gap.sets.get(next));
+        }
+        return found;
+    }
+
+    /**
+     * Checks that every gap not combined yet still has a path that does not use the used cells
+     * @param gaps The gaps, in combination order
+     * @param from The first gap not combined yet
+     * @param used The cells used so far
+     * @return true if no gap is left without paths, false otherwise or if the search has to stop
+     */
+    private boolean othersStillFit(List<Gap> gaps, int from, long[] used) {
+        for (int g = from; g < gaps.size(); g++) {
+            List<long[]> sets = gaps.get(g).sets;
+            boolean fits = false;
+            for (int i = 0; i < sets.size() && !fits; i++) {
+                if (!isStepAllowed()) return false;
+                fits = isDisjoint(used, sets.get(i));
+            }
+            if (!fits) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether two bitsets have no cell in common
+     * @param used The cells used so far
+     * @param set The cells of a path
+     * @return true if they are disjoint
+     */
+    private static boolean isDisjoint(long[] used, long[] set) {
+        for (int w = 0; w < used.length; w++) {
+            if ((used[w] & set[w]) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds the cells of a path to the used cells, or removes them if they are already there
+     * @param used The cells used so far
+     * @param set The cells of a path, disjoint with the used cells or contained in them
+     */
+    private static void toggle(long[] used, long[] set) {
+        for (int w = 0; w < used.length; w++) used[w] ^= set[w];
+    }
+
+    /**
+     * Counts a step and checks the token from time to time
+     * @return false if the search has to stop or the step limit was reached
+     */
+    private boolean isStepAllowed() {
+        if ((++steps & STOP_CHECK_MASK) == 0 && token.isExpired()) stopped = true;
+        if (steps > MAX_STEPS) overflow = true;
+        return !stopped && !overflow;
+    }
+
+    /**
+     * Unmarks the cells of a path that is abandoned
+     * @param path The cells of the path
+     * @param depth The depth of the last cell
+     */
+    private void clearPath(int[] path, int depth) {
+        for (int i = 1; i <= depth; i++) onPath[path[i]] = false;
+    }
+
+    /**
+     * Moves to the next mark stamp
+     */
+    private void nextStamp() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * The paths of empty cells of a gap
+     */
+    private static class Gap {
+        /**
+         * The number before the first cell of the paths
+         */
+        private final int start;
+
+        /**
+         * The cells of every path, holding the numbers start + 1, start + 2, ...
+         */
+        private final List<int[]> paths = new ArrayList<>();
+
+        /**
+         * The cells of every path as a bitset
+         */
+        private final List<long[]> sets = new ArrayList<>();
+
+        /**
+         * Creates a gap without paths
+         * @param start The number before the first cell of the paths
+         */
+        Gap(int start) {
+            this.start = start;
+        }
+
+        /**
+         * Adds a path to the gap
+         * @param path The cells of the path
+         * @param words The number of longs of a bitset over the cells
+         */
+        void add(int[] path, int words) {
+            long[] set = new long[words];
+            for (int cell : path) set[cell >>> 6] |= 1L << cell;
+            paths.add(path);
+            sets.add(set);
+        }
+    }
+}
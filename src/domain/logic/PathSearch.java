@@ -0,0 +1,852 @@
+package domain.logic;
+
+import domain.game.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * PathSearch is the backtracking core used by the {@link Solver}. It looks for a path of consecutive numbers from 1
+ * to the highest given number over a {@link CellGraph}, passing through every given number at its position.
+ *
+ * The search is iterative: instead of recursing once per placed number it keeps its own stack of primitive arrays
+ * (the cell of every placed number and the next neighbour to try from it), so the size of the problem is not limited
+ * by the thread stack and no object is allocated while searching.
+ *
+ * Branches are pruned with the distance to the next given number: a cell can only hold the number n if the cell of
+ * the next given number g can be reached from it in exactly g - n steps. The distances are computed once per given
+ * number with a breadth first search on the graph.
+ *
+ * Branches are also pruned with the cells that are still open (empty cells, given numbers not reached yet and the
+ * last placed number). Every open cell that has to be part of the path needs two open neighbours (one if it holds the
+ * highest number), and all of them have to stay connected to the last placed number. The open neighbours of every
+ * cell are counted incrementally and the connectivity is only checked with a flood fill when the cell that was just
+ * left could have split the open cells. An open cell next to the last placed number that has only one other open
+ * neighbour has to be the next number, so if there are two of them the branch is cut, and if there is one it is the
+ * only move tried.
+ *
+ * On {@link Type#Square} maps with up to {@link Bitboard#MAX_COLUMNS} columns the open cells are also kept in a
+ * {@link Bitboard}, and the connectivity check floods whole rows at once instead of visiting the cells one by one.
+ *
+ * Every search counts the numbers it places, the times it goes back and the branches cut by every rule in a
+ * {@link SolverStats.Counter}.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+class PathSearch {
+
+    /**
+     * The stop condition is checked whenever the number of steps is a multiple of this mask + 1
+     */
+    private static final int STOP_CHECK_MASK = 4095;
+
+    /**
+     * Returned by {@link #forcedNeighbour(int, int)} when the path can not be continued
+     */
+    private static final int CONTRADICTION = -2;
+
+    /**
+     * Highest number of cells of a map whose open cells are flooded as the bits of a long
+     */
+    private static final int SMALL_CELLS = 64;
+
+    /**
+     * Compiled adjacency graph of the problem
+     */
+    private final CellGraph graph;
+
+    /**
+     * Current value of every cell. Contains the solution once {@link #solve()} returned true.
+     */
+    private final int[] values;
+
+    /**
+     * Highest number given by the problem, the last number of the path
+     */
+    private final int max;
+
+    /**
+     * For every number n, the cell in which n is given, or -1 if n has to be placed by the search
+     */
+    private final int[] givenCell;
+
+    /**
+     * For every number n, the smallest given number greater or equal than n
+     */
+    private final int[] nextGiven;
+
+    /**
+     * For every number n, how many given numbers are greater than n
+     */
+    private final int[] givensAfter;
+
+    /**
+     * For every given number g, the distance of every cell to the cell of g. Computed the first time it is needed.
+     */
+    private final int[][] distances;
+
+    /**
+     * Whether the graph is bipartite, in which case the parity of the distances is also checked
+     */
+    private final boolean bipartite;
+
+    /**
+     * Whether there are exactly as many empty cells as numbers to place, so every empty cell has to be covered
+     */
+    private final boolean coverAll;
+
+    /**
+     * Whether there are less empty cells than numbers to place, so the problem has no solution
+     */
+    private final boolean tooFewCells;
+
+    /**
+     * Number of empty cells left
+     */
+    private int freeRemaining;
+
+    /**
+     * For every cell, the number of its neighbours that are still open
+     */
+    private final int[] openDegree;
+
+    /**
+     * Explicit search stack: path[d] is the cell holding the number d + 1
+     */
+    private final int[] path;
+
+    /**
+     * Explicit search stack: cursor[d] is the position in {@link CellGraph#neighbours} of the next neighbour of
+     * path[d] to be tried for the number d + 2
+     */
+    private final int[] cursor;
+
+    /**
+     * Explicit search stack: forced[d] is the only cell that can hold the number d + 2, or -1 if there is no such cell
+     */
+    private final int[] forced;
+
+    /**
+     * Depth of the end of the path: path[depth] holds the number depth + 1
+     */
+    private int depth;
+
+    /**
+     * Condition that stops the search, or null
+     */
+    private BooleanSupplier stop;
+
+    /**
+     * Whether the last search was stopped by {@link #stop}
+     */
+    private boolean stopped;
+
+    /**
+     * Number of steps done by the search, used to check {@link #stop} from time to time
+     */
+    private int steps;
+
+    /**
+     * Number of solutions after which the search stops
+     */
+    private int solutionLimit = 1;
+
+    /**
+     * Number of solutions found by the current search
+     */
+    private int found;
+
+    /**
+     * Copy of the values of the first solution found by the current search, or null if none was found yet
+     */
+    private int[] firstSolution;
+
+    /**
+     * Beginnings of paths collected by {@link #prefixes(int)}, null when not collecting
+     */
+    private List<int[]> prefixes;
+
+    /**
+     * Forced cell for the number after the one placed by the last successful {@link #advance(int, int, int)}
+     */
+    private int nextForced;
+
+    /**
+     * Flood fill visit marks, a cell is visited if its mark equals {@link #floodStamp}
+     */
+    private final int[] floodMark;
+
+    /**
+     * Current flood fill stamp
+     */
+    private int floodStamp;
+
+    /**
+     * Queue of the flood fill
+     */
+    private final int[] queue;
+
+    /**
+     * Playable cells that are not part of the path, apart from its end. Null if the map does not fit in a
+     * {@link Bitboard}.
+     */
+    private final Bitboard openCells;
+
+    /**
+     * Cells holding a given number, null if the map does not fit in a {@link Bitboard}
+     */
+    private final Bitboard givenCells;
+
+    /**
+     * Cells reached by the last bitboard flood fill, null if the map does not fit in a {@link Bitboard}
+     */
+    private final Bitboard reached;
+
+    /**
+     * On maps of up to {@link #SMALL_CELLS} cells that do not fit in a {@link Bitboard}, the neighbours of every cell as
+     * a bit mask, otherwise null
+     */
+    private final long[] neighbourMasks;
+
+    /**
+     * Open cells as a bit mask, like {@link #openCells}, if {@link #neighbourMasks} is not null
+     */
+    private long openMask;
+
+    /**
+     * Cells holding a given number as a bit mask, if {@link #neighbourMasks} is not null
+     */
+    private final long givenMask;
+
+    /**
+     * Counts of the searches done so far
+     */
+    private final SolverStats.Counter counter = new SolverStats.Counter();
+
+    /**
+     * Prepares a search over a graph. The initial values of the graph are copied.
+     *
+     * @param graph The compiled problem
+     */
+    PathSearch(CellGraph graph) {
+        this.graph = graph;
+        this.values = graph.getValues();
+        int size = values.length;
+
+        int highest = 0;
+        int free = 0;
+        for (int i = 0; i < size; i++) {
+            if (values[i] > highest) highest = values[i];
+            if (values[i] == CellGraph.FREE) free++;
+        }
+        this.max = highest;
+        this.givenCell = new int[max + 1];
+        for (int n = 0; n <= max; n++) givenCell[n] = -1;
+        int givens = 0;
+        for (int i = 0; i < size; i++) {
+            if (values[i] > 0) {
+                if (givenCell[values[i]] < 0) givens++;
+                givenCell[values[i]] = i;
+            }
+        }
+        this.nextGiven = new int[max + 1];
+        this.givensAfter = new int[max + 1];
+        int next = max;
+        int after = 0;
+        for (int n = max; n >= 0; n--) {
+            givensAfter[n] = after;
+            if (givenCell[n] >= 0) {
+                next = n;
+                after++;
+            }
+            nextGiven[n] = next;
+        }
+        this.distances = new int[max + 1][];
+        this.bipartite = graph.isBipartite();
+        this.freeRemaining = free;
+        this.coverAll = free == max - givens;
+        this.tooFewCells = free < max - givens;
+
+        this.openDegree = new int[size];
+        for (int i = 0; i < size; i++) openDegree[i] = graph.degree(i);
+        this.path = new int[max];
+        this.cursor = new int[max];
+        this.forced = new int[max];
+        this.floodMark = new int[size];
+        this.queue = new int[size];
+
+        if (graph.getType() == Type.Square && Bitboard.fits(graph.getNumColumns())) {
+            openCells = new Bitboard(graph.getNumRows(), graph.getNumColumns());
+            givenCells = new Bitboard(graph.getNumRows(), graph.getNumColumns());
+            reached = new Bitboard(graph.getNumRows(), graph.getNumColumns());
+            for (int i = 0; i < size; i++) {
+                if (values[i] >= CellGraph.FREE) openCells.set(i);
+                if (values[i] > 0) givenCells.set(i);
+            }
+        }
+        else {
+            openCells = null;
+            givenCells = null;
+            reached = null;
+        }
+        if (openCells == null && size <= SMALL_CELLS) {
+            neighbourMasks = new long[size];
+            long open = 0;
+            long given = 0;
+            for (int i = 0; i < size; i++) {
+                for (int k = graph.offsets[i]; k < graph.offsets[i + 1]; k++) {
+                    neighbourMasks[i] |= 1L << graph.neighbours[k];
+                }
+                if (values[i] >= CellGraph.FREE) open |= 1L << i;
+                if (values[i] > 0) given |= 1L << i;
+            }
+            openMask = open;
+            givenMask = given;
+        }
+        else {
+            neighbourMasks = null;
+            givenMask = 0;
+        }
+    }
+
+    /**
+     * Searches a solution. If the number 1 is given the path starts there, otherwise every empty cell is tried as
+     * the start.
+     *
+     * @return true if a solution was found, false if there is none or the search was stopped
+     */
+    boolean solve() {
+        return count(1) > 0;
+    }
+
+    /**
+     * Counts the solutions, stopping as soon as the passed number of solutions has been found. The values of the
+     * cells hold the last solution found if the limit was reached.
+     *
+     * @param limit The number of solutions after which the search stops
+     * @return The number of solutions found, at most limit
+     */
+    int count(int limit) {
+        solutionLimit = limit;
+        found = 0;
+        firstSolution = null;
+        if (max == 0 || tooFewCells) return 0;
+        if (max == 1) {
+            firstSolution = values.clone();
+            return 1;
+        }
+        if (givenCell[1] >= 0) {
+            if (begin(givenCell[1])) run(0, Integer.MAX_VALUE);
+            return found;
+        }
+        for (int start = 0; start < values.length && !stopped && found < limit; start++) {
+            if (values[start] == CellGraph.FREE && canReachNextGiven(start, 1) && begin(start)) {
+                run(0, Integer.MAX_VALUE);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Lists, in search order, all the beginnings of a path that reach the passed length without being pruned. A
+     * complete solution shorter than the passed length is listed as well. Searching from every listed beginning
+     * with {@link #countFrom(int[], int)} explores the same tree as {@link #count(int)}.
+     *
+     * @param length    The number of cells of the beginnings
+     * @return The cells of the beginnings, in search order
+     */
+    List<int[]> prefixes(int length) {
+        List<int[]> result = new ArrayList<>();
+        if (max <= 1 || tooFewCells) return result;
+        prefixes = result;
+        for (int start = 0; start < values.length; start++) {
+            boolean candidate = givenCell[1] >= 0 ? start == givenCell[1]
+                    : values[start] == CellGraph.FREE && canReachNextGiven(start, 1);
+            if (candidate && begin(start)) run(0, length - 1);
+        }
+        prefixes = null;
+        return result;
+    }
+
+    /**
+     * Searches a solution that begins with the passed cells. The beginning has to be one of those listed by
+     * {@link #prefixes(int)}.
+     *
+     * @param prefix    The cells holding the numbers 1 .. prefix.length
+     * @return true if a solution was found, false if there is none or the search was stopped
+     */
+    boolean solveFrom(int[] prefix) {
+        return countFrom(prefix, 1) > 0;
+    }
+
+    /**
+     * Counts the solutions that begin with the passed cells, stopping as soon as the passed number of solutions has
+     * been found. The beginning has to be one of those listed by {@link #prefixes(int)}.
+     *
+     * @param prefix    The cells holding the numbers 1 .. prefix.length
+     * @param limit     The number of solutions after which the search stops
+     * @return The number of solutions found, at most limit
+     */
+    int countFrom(int[] prefix, int limit) {
+        solutionLimit = limit;
+        found = 0;
+        firstSolution = null;
+        if (max == 1) {
+            firstSolution = values.clone();
+            return 1;
+        }
+        if (!begin(prefix[0])) return 0;
+        for (int i = 1; i < prefix.length; i++) {
+            int cell = path[depth];
+            int nb = prefix[i];
+            int n = i + 1;
+            if (values[nb] == CellGraph.FREE) {
+                values[nb] = n;
+                freeRemaining--;
+            }
+            if (values[nb] != n || !advance(cell, nb, n)) return 0;
+            depth++;
+            path[depth] = nb;
+            cursor[depth] = graph.offsets[nb];
+            forced[depth] = nextForced;
+        }
+        if (prefix.length == max) {
+            firstSolution = values.clone();
+            found = 1;
+        }
+        else run(prefix.length - 1, Integer.MAX_VALUE);
+        return found;
+    }
+
+    /**
+     * Places the number 1 in a cell and checks the open cells
+     *
+     * @param start The cell holding the number 1
+     * @return true if the search can start at that cell, false otherwise
+     */
+    private boolean begin(int start) {
+        if (givenCell[1] < 0) {
+            values[start] = 1;
+            freeRemaining--;
+        }
+        int first = feasibleAtStart(start) ? forcedNeighbour(start, 1) : CONTRADICTION;
+        if (first == CONTRADICTION) {
+            if (givenCell[1] < 0) {
+                values[start] = CellGraph.FREE;
+                freeRemaining++;
+            }
+            return false;
+        }
+        path[0] = start;
+        cursor[0] = graph.offsets[start];
+        forced[0] = first;
+        depth = 0;
+        return true;
+    }
+
+    /**
+     * Iterative depth first search from the current end of the path. The search does not go back further than the
+     * passed depth; when it is exhausted the cells placed above that depth are emptied again.
+     *
+     * @param floor The lowest depth the search may go back to
+     * @param limit The depth at which the path is listed in {@link #prefixes} instead of being extended
+     * @return true if {@link #solutionLimit} solutions have been found, false otherwise
+     */
+    private boolean run(int floor, int limit) {
+        int[] offsets = graph.offsets;
+        int[] neighbours = graph.neighbours;
+
+        while (depth >= floor) {
+            if (stop != null && (++steps & STOP_CHECK_MASK) == 0 && stop.getAsBoolean()) {
+                stopped = true;
+                return false;
+            }
+            int cell = path[depth];
+            int next = depth + 2;
+            int target = givenCell[next];
+            if (target < 0) target = forced[depth];
+            int k = cursor[depth];
+            int end = offsets[cell + 1];
+            int chosen = -1;
+            while (k < end) {
+                int nb = neighbours[k++];
+                if (target >= 0 ? nb != target : values[nb] != CellGraph.FREE) continue;
+                boolean free = values[nb] == CellGraph.FREE;
+                if (free) {
+                    if (!canReachNextGiven(nb, next)) {
+                        counter.prune(SolverStats.Prune.DISTANCE);
+                        continue;
+                    }
+                    values[nb] = next;
+                    freeRemaining--;
+                }
+                if (next == max) {
+                    counter.nodes++;
+                    counter.maxDepth = max;
+                    if (prefixes != null) prefixes.add(currentPath(nb));
+                    else {
+                        if (found == 0) firstSolution = values.clone();
+                        if (++found >= solutionLimit) return true;
+                    }
+                }
+                else if (advance(cell, nb, next)) {
+                    counter.nodes++;
+                    if (depth + 1 < limit) {
+                        chosen = nb;
+                        break;
+                    }
+                    prefixes.add(currentPath(nb));
+                    reopen(cell);
+                }
+                if (free) {
+                    values[nb] = CellGraph.FREE;
+                    freeRemaining++;
+                }
+            }
+            cursor[depth] = k;
+
+            if (chosen >= 0) {
+                depth++;
+                path[depth] = chosen;
+                cursor[depth] = offsets[chosen];
+                forced[depth] = nextForced;
+                if (next > counter.maxDepth) counter.maxDepth = next;
+            }
+            else {
+                counter.backtracks++;
+                if (givenCell[depth + 1] < 0) {
+                    values[cell] = CellGraph.FREE;
+                    freeRemaining++;
+                }
+                depth--;
+                if (depth >= 0) reopen(path[depth]);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies the current path followed by one more cell
+     *
+     * @param last  The cell after the end of the path
+     * @return The cells holding the numbers 1 .. depth + 2
+     */
+    private int[] currentPath(int last) {
+        int[] cells = Arrays.copyOf(path, depth + 2);
+        cells[depth + 1] = last;
+        return cells;
+    }
+
+    /**
+     * Sets a condition that stops the search. It is checked every few thousand steps.
+     *
+     * @param stop  Returns true when the search has to stop, or null to never stop
+     */
+    void setStop(BooleanSupplier stop) {
+        this.stop = stop;
+    }
+
+    /**
+     * Returns whether the last search was stopped by the condition passed to {@link #setStop(BooleanSupplier)}
+     *
+     * @return true if the search was stopped before it finished
+     */
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Checks whether a cell is open when the last placed number is n: it is empty or holds a given number greater
+     * than n. The cell holding n is open too, but is not recognised by this function.
+     *
+     * @param cell  The index of a cell
+     * @param n     The last placed number
+     * @return true if the cell is empty or holds a given number greater than n
+     */
+    private boolean isOpen(int cell, int n) {
+        int v = values[cell];
+        return v == CellGraph.FREE || v > n;
+    }
+
+    /**
+     * Checks whether an open cell has too few open neighbours to be part of the path
+     *
+     * @param cell  An open cell that does not hold the last placed number
+     * @return true if the cell has to be part of the path but can not be linked to enough open neighbours
+     */
+    private boolean isDeadEnd(int cell) {
+        int v = values[cell];
+        if (v == CellGraph.FREE) return coverAll && openDegree[cell] < 2;
+        return openDegree[cell] < (v == max ? 1 : 2);
+    }
+
+    /**
+     * Moves the end of the path from one cell to a neighbour that already holds the number n. The left cell is
+     * closed and the open cells are checked for dead ends and, if needed, connectivity. If the check fails the left
+     * cell is opened again.
+     *
+     * @param from  The cell holding the number n - 1
+     * @param to    The cell holding the number n
+     * @param n     The number placed in to
+     * @return true if the open cells can still be covered, false otherwise
+     */
+    private boolean advance(int from, int to, int n) {
+        int[] offsets = graph.offsets;
+        int[] neighbours = graph.neighbours;
+        boolean feasible = true;
+        int ring = 0;
+        if (openCells != null) openCells.clear(from);
+        openMask &= ~(1L << from);
+        for (int k = offsets[from]; k < offsets[from + 1]; k++) {
+            int x = neighbours[k];
+            openDegree[x]--;
+            if (x == to) {
+                ring |= 1 << (k - offsets[from]);
+            }
+            else if (isOpen(x, n)) {
+                ring |= 1 << (k - offsets[from]);
+                if (feasible && isDeadEnd(x)) {
+                    feasible = false;
+                    counter.prune(SolverStats.Prune.DEAD_END);
+                }
+            }
+        }
+        if (feasible && (ring & ring - 1) != 0 && ringIsSplit(from, ring) && !isConnected(to, n)) {
+            feasible = false;
+            counter.prune(SolverStats.Prune.CONNECTIVITY);
+        }
+        if (feasible) {
+            nextForced = forcedNeighbour(to, n);
+            feasible = nextForced != CONTRADICTION;
+            if (!feasible) counter.prune(SolverStats.Prune.FORCED);
+        }
+        if (!feasible) reopen(from);
+        return feasible;
+    }
+
+    /**
+     * Looks for an open neighbour of the end of the path that can only be linked to the end of the path and one
+     * other cell. Such a cell has to hold the next number.
+     *
+     * @param head  The cell holding the last placed number
+     * @param n     The last placed number
+     * @return The only empty cell that can hold n + 1, -1 if there is none, or {@link #CONTRADICTION} if two cells
+     *         need to hold n + 1 or a given number other than n + 1 needs to follow n
+     */
+    private int forcedNeighbour(int head, int n) {
+        int[] offsets = graph.offsets;
+        int[] neighbours = graph.neighbours;
+        int candidate = -1;
+        for (int k = offsets[head]; k < offsets[head + 1]; k++) {
+            int x = neighbours[k];
+            int v = values[x];
+            if (!isOpen(x, n)) continue;
+            int needed = v == CellGraph.FREE ? (coverAll ? 2 : 0) : (v == max ? 1 : 2);
+            if (needed == 0 || openDegree[x] > needed) continue;
+            if (openDegree[x] < needed) return CONTRADICTION;
+            if (v == CellGraph.FREE ? givenCell[n + 1] >= 0 : v != n + 1) return CONTRADICTION;
+            if (candidate >= 0 && candidate != x) return CONTRADICTION;
+            candidate = x;
+        }
+        return candidate;
+    }
+
+    /**
+     * Opens a cell again after the path has gone back to it
+     *
+     * @param cell  The cell that is the end of the path again
+     */
+    private void reopen(int cell) {
+        int[] offsets = graph.offsets;
+        int[] neighbours = graph.neighbours;
+        if (openCells != null) openCells.set(cell);
+        openMask |= 1L << cell;
+        for (int k = offsets[cell]; k < offsets[cell + 1]; k++) {
+            openDegree[neighbours[k]]++;
+        }
+    }
+
+    /**
+     * Checks whether the open neighbours of the cell that was just left are not all connected among themselves, in
+     * which case closing the cell could have split the open cells. The neighbours are flooded as bits of a mask with
+     * the links of {@link CellGraph#neighbourLinks}, so every neighbour is visited once.
+     *
+     * @param cell  The cell that was just left
+     * @param ring  Mask of its open neighbours, bit i standing for the neighbour at offsets[cell] + i
+     * @return true if some cells of the ring are not connected to the lowest one through the ring
+     */
+    private boolean ringIsSplit(int cell, int ring) {
+        int[] links = graph.neighbourLinks;
+        int first = graph.offsets[cell];
+        int reached = ring & -ring;
+        int pending = reached;
+        while (pending != 0) {
+            int i = Integer.numberOfTrailingZeros(pending);
+            pending &= pending - 1;
+            int linked = links[first + i] & ring & ~reached;
+            reached |= linked;
+            pending |= linked;
+        }
+        return reached != ring;
+    }
+
+    /**
+     * Flood fill over the open cells starting at the end of the path. Checks that every given number not reached
+     * yet and, if every empty cell has to be covered, every empty cell can be reached.
+     *
+     * @param head  The cell holding the last placed number
+     * @param n     The last placed number
+     * @return true if all the cells that have to be covered are reachable, false otherwise
+     */
+    private boolean isConnected(int head, int n) {
+        if (openCells != null) return isConnectedBitboard(head, n);
+        if (neighbourMasks != null) return isConnectedMask(head, n);
+        int[] offsets = graph.offsets;
+        int[] neighbours = graph.neighbours;
+        if (++floodStamp == Integer.MAX_VALUE) {
+            Arrays.fill(floodMark, 0);
+            floodStamp = 1;
+        }
+        int free = 0;
+        int givens = 0;
+        int first = 0;
+        int last = 0;
+        floodMark[head] = floodStamp;
+        queue[last++] = head;
+        while (first < last) {
+            int u = queue[first++];
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                int v = neighbours[k];
+                if (floodMark[v] != floodStamp && isOpen(v, n)) {
+                    floodMark[v] = floodStamp;
+                    queue[last++] = v;
+                    if (values[v] == CellGraph.FREE) free++;
+                    else givens++;
+                }
+            }
+        }
+        return givens == givensAfter[n] && (!coverAll || free == freeRemaining);
+    }
+
+    /**
+     * Same check as {@link #isConnected(int, int)}, flooding the {@link Bitboard} of the open cells
+     *
+     * @param head  The cell holding the last placed number
+     * @param n     The last placed number
+     * @return true if all the cells that have to be covered are reachable, false otherwise
+     */
+    private boolean isConnectedBitboard(int head, int n) {
+        reached.flood(openCells, graph.rowOf(head), graph.columnOf(head), graph.isCornerAdjacent());
+        boolean headGiven = isGiven(head);
+        int givens = reached.countAnd(givenCells) - (headGiven ? 1 : 0);
+        if (givens != givensAfter[n]) return false;
+        if (!coverAll) return true;
+        int free = reached.countAndNot(givenCells) - (headGiven ? 0 : 1);
+        return free == freeRemaining;
+    }
+
+    /**
+     * Same check as {@link #isConnected(int, int)}, flooding the bits of {@link #openMask}
+     *
+     * @param head  The cell holding the last placed number
+     * @param n     The last placed number
+     * @return true if all the cells that have to be covered are reachable, false otherwise
+     */
+    private boolean isConnectedMask(int head, int n) {
+        long reachedMask = 1L << head;
+        long pending = reachedMask;
+        while (pending != 0) {
+            int u = Long.numberOfTrailingZeros(pending);
+            pending &= pending - 1;
+            long linked = neighbourMasks[u] & openMask & ~reachedMask;
+            reachedMask |= linked;
+            pending |= linked;
+        }
+        boolean headGiven = isGiven(head);
+        int givens = Long.bitCount(reachedMask & givenMask) - (headGiven ? 1 : 0);
+        if (givens != givensAfter[n]) return false;
+        if (!coverAll) return true;
+        int free = Long.bitCount(reachedMask & ~givenMask) - (headGiven ? 0 : 1);
+        return free == freeRemaining;
+    }
+
+    /**
+     * Checks whether a cell holds a number given by the problem
+     *
+     * @param cell  The index of a cell
+     * @return true if the number of the cell was given
+     */
+    private boolean isGiven(int cell) {
+        int v = values[cell];
+        return v > 0 && givenCell[v] == cell;
+    }
+
+    /**
+     * Checks the open cells before the search starts from a cell
+     *
+     * @param start The cell holding the number 1
+     * @return true if no open cell is a dead end and all of them are connected to the start
+     */
+    private boolean feasibleAtStart(int start) {
+        for (int i = 0; i < values.length; i++) {
+            if (i != start && isOpen(i, 1) && values[i] != CellGraph.HOLE && values[i] != CellGraph.BLOCKED
+                    && isDeadEnd(i)) {
+                return false;
+            }
+        }
+        return isConnected(start, 1);
+    }
+
+    /**
+     * Checks whether the next given number can still be reached in time if the number n is placed in a cell
+     *
+     * @param cell  The cell in which n would be placed
+     * @param n     A number that is not given
+     * @return true if the distance from the cell to the next given number g is at most g - n (and has the same parity
+     *         in bipartite graphs), false otherwise
+     */
+    private boolean canReachNextGiven(int cell, int n) {
+        int g = nextGiven[n];
+        int[] dist = distances[g];
+        if (dist == null) {
+            int previous = n - 1;
+            while (previous > 0 && givenCell[previous] < 0) previous--;
+            dist = graph.distancesFrom(givenCell[g], g - previous);
+            distances[g] = dist;
+        }
+        int steps = g - n;
+        int d = dist[cell];
+        return d <= steps && (!bipartite || ((steps - d) & 1) == 0);
+    }
+
+    /**
+     * Returns the counts of the searches done with this object
+     *
+     * @return The counter of the searches
+     */
+    SolverStats.Counter getCounter() {
+        return counter;
+    }
+
+    /**
+     * Returns the current values of the cells, which hold the solution after a successful {@link #solve()}
+     *
+     * @return The value of every cell, indexed like the graph
+     */
+    int[] getValues() {
+        return values;
+    }
+
+    /**
+     * Returns the values of the first solution found by the last search. Unlike {@link #getValues()} it is kept
+     * when a count goes on looking for more solutions.
+     *
+     * @return The value of every cell in the first solution, or null if no solution was found
+     */
+    int[] getFirstSolution() {
+        return firstSolution;
+    }
+}
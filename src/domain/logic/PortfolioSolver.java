@@ -0,0 +1,319 @@
+package domain.logic;
+
+import domain.game.HexagonProblem;
+import domain.game.Problem;
+import domain.game.SquareProblem;
+import domain.game.TriangleProblem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * PortfolioSolver races several search strategies on the same problem. Every strategy runs in its own thread with a
+ * child of the caller's {@link SolveToken}; the first one that decides the problem (finds a solution or proves there
+ * is none) wins and the others are cancelled. The time a search needs changes by orders of magnitude from one board
+ * to another and from one strategy to another, so racing them cuts the slowest solves far more than any single
+ * strategy does.
+ *
+ * The strategies are:
+ * - {@link Strategy#FORWARD}: the {@link Solver}, building the path from the number 1,
+ * - {@link Strategy#BACKWARD}: the {@link Solver} on the reversed problem, building the path from the highest number.
+ *   Only used when the number 1 is given, otherwise the reversed path would have no fixed end,
+ * - {@link Strategy#MOST_CONSTRAINED}: the {@link PropagationSolver}, placing first the number with the fewest
+ *   candidates.
+ *
+ * How many races every strategy has won is counted for the whole application. Only the search of the winning
+ * strategy is added to the {@link SolverMetrics}, the searches cancelled when it won are not, and neither are races
+ * that no strategy decided.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class PortfolioSolver implements HidatoSolver {
+
+    /**
+     * The strategies raced by the portfolio
+     */
+    public enum Strategy {
+        FORWARD, BACKWARD, MOST_CONSTRAINED
+    }
+
+    /**
+     * Threads running the strategies. They are daemon threads, so they never keep the application alive.
+     */
+    private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "hidato-portfolio");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Races won by every strategy, indexed by {@link Strategy#ordinal()}
+     */
+    private static final AtomicLongArray wins = new AtomicLongArray(Strategy.values().length);
+
+    /**
+     * Solution of the last race, or of the last count
+     */
+    private String[][] solution;
+
+    /**
+     * Strategy that won the last race, or null if no strategy decided the problem
+     */
+    private Strategy winner;
+
+    /**
+     * Solves the problem given by the controller
+     * @param problem Problem given by the controller
+     * @return The solved map, or null if the problem has no solution
+     */
+    @Override
+    public String[][] solve(Problem problem) {
+        return solve(problem, new SolveToken()).getSolution();
+    }
+
+    /**
+     * Races the strategies on the problem given by the controller, giving up once the passed token expires
+     * @param problem Problem given by the controller
+     * @param token Token that stops the race
+     * @return The result of the first strategy that decided the problem, or the reason why none did
+     */
+    @Override
+    public SolveResult solve(Problem problem, SolveToken token) {
+        solution = null;
+        winner = null;
+        List<Strategy> strategies = new ArrayList<>();
+        strategies.add(Strategy.FORWARD);
+        if (isOneGiven(problem)) strategies.add(Strategy.BACKWARD);
+        strategies.add(Strategy.MOST_CONSTRAINED);
+
+        CompletionService<Outcome> race = new ExecutorCompletionService<>(executor);
+        List<SolveToken> tokens = new ArrayList<>();
+        for (Strategy strategy : strategies) {
+            SolveToken child = new SolveToken(token);
+            tokens.add(child);
+            race.submit(() -> new Outcome(strategy, run(strategy, problem, child)));
+        }
+
+        SolveResult result = null;
+        try {
+            for (int i = 0; i < strategies.size() && result == null; i++) {
+                Outcome outcome = race.take().get();
+                if (!outcome.result.isStopped()) {
+                    result = outcome.result;
+                    winner = outcome.strategy;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Solver strategy failed", e.getCause());
+        } finally {
+            for (SolveToken child : tokens) child.cancel();
+        }
+
+        if (result == null) {
+            SolveResult.Status status = token.isCancelled() ? SolveResult.Status.CANCELLED : SolveResult.Status.TIMED_OUT;
+            return new SolveResult(status, null);
+        }
+        wins.incrementAndGet(winner.ordinal());
+        if (result.getStats() != null) SolverMetrics.getSolverMetrics().record(problem, result.getStats(), false);
+        solution = result.getSolution();
+        return result;
+    }
+
+    /**
+     * Counts the solutions of a problem with the {@link PropagationSolver}. Counting has to explore the whole tree
+     * whatever the strategy, so there is nothing to race, and the propagation prunes the tree the most.
+     * @param problem Problem given by the controller
+     * @param limit Number of solutions after which the search stops, at least 1
+     * @return The number of solutions found, at most limit
+     */
+    @Override
+    public int countSolutions(Problem problem, int limit) {
+        return countSolutions(problem, limit, new SolveToken());
+    }
+
+    /**
+     * Counts the solutions of a problem with the {@link PropagationSolver} like {@link #countSolutions(Problem, int)},
+     * giving up once the passed token expires
+     * @param problem Problem given by the controller
+     * @param limit Number of solutions after which the search stops, at least 1
+     * @param token Token that stops the search
+     * @return The number of solutions found, at most limit, or -1 if the token expired before the count was complete
+     */
+    @Override
+    public int countSolutions(Problem problem, int limit, SolveToken token) {
+        PropagationSolver solver = new PropagationSolver();
+        int count = solver.countSolutions(problem, limit, token);
+        solution = count > 0 ? solver.printProblem() : null;
+        return count;
+    }
+
+    /**
+     * Prints the solution found by the last call
+     * @return The solved map, or null if none was found
+     */
+    @Override
+    public String[][] printProblem() {
+        return solution;
+    }
+
+    /**
+     * Getter function for the winner of the last race
+     * @return The strategy that decided the last problem, or null if none did
+     */
+    public Strategy getWinner() {
+        return winner;
+    }
+
+    /**
+     * Returns how many races a strategy has won since the application started
+     * @param strategy A strategy
+     * @return The number of races won by the strategy
+     */
+    public static long getWins(Strategy strategy) {
+        return wins.get(strategy.ordinal());
+    }
+
+    /**
+     * Sets the number of races won by every strategy back to 0
+     */
+    public static void resetWins() {
+        for (int i = 0; i < wins.length(); i++) wins.set(i, 0);
+    }
+
+    /**
+     * Runs a strategy on a problem
+     * @param strategy The strategy
+     * @param problem The problem
+     * @param token Token that stops the strategy
+     * @return The result of the strategy
+     */
+    private static SolveResult run(Strategy strategy, Problem problem, SolveToken token) {
+        switch (strategy) {
+            case BACKWARD:
+                Problem reversed = reverse(problem);
+                SolveResult result = unrecordedSolver().solve(reversed, token);
+                if (!result.isSolved()) return result;
+                return new SolveResult(SolveResult.Status.SOLVED, reverse(result.getSolution(), highestNumber(problem)),
+                        result.getStats());
+            case MOST_CONSTRAINED:
+                return new PropagationSolver().solve(problem, token);
+            default:
+                return unrecordedSolver().solve(problem, token);
+        }
+    }
+
+    /**
+     * Creates a {@link Solver} whose searches are not added to the {@link SolverMetrics}, so a strategy that loses the
+     * race is not recorded
+     * @return A sequential solver
+     */
+    private static Solver unrecordedSolver() {
+        Solver solver = new Solver();
+        solver.setRecordMetrics(false);
+        return solver;
+    }
+
+    /**
+     * Checks whether the number 1 is given in a problem
+     * @param problem A problem
+     * @return true if a field of the map holds "1"
+     */
+    private static boolean isOneGiven(Problem problem) {
+        for (String[] row : problem.getMap()) {
+            for (String cell : row) {
+                if (cell.equals("1")) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the highest number given in a problem
+     * @param problem A problem
+     * @return The highest number of the map, 0 if there is none
+     */
+    private static int highestNumber(Problem problem) {
+        int max = 0;
+        for (String[] row : problem.getMap()) {
+            for (String cell : row) {
+                if (cell.matches("\\d+")) max = Math.max(max, Integer.parseInt(cell));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Builds the problem whose path is the path of the passed problem walked backwards: every given number n becomes
+     * max + 1 - n.
+     * @param problem A problem in which the number 1 is given
+     * @return The reversed problem
+     */
+    private static Problem reverse(Problem problem) {
+        String[][] map = reverse(problem.getMap(), highestNumber(problem));
+        switch (problem.getType()) {
+            case Square:
+                return new SquareProblem(map, problem.getNumRows(), problem.getNumColumns(), problem.getDifficulty(),
+                        problem.getCreatorName(), ((SquareProblem) problem).isCornerAdjacent());
+            case Triangle:
+                return new TriangleProblem(map, problem.getNumRows(), problem.getNumColumns(), problem.getDifficulty(),
+                        problem.getCreatorName(), ((TriangleProblem) problem).isCornerAdjacent());
+            default:
+                return new HexagonProblem(map, problem.getNumRows(), problem.getNumColumns(), problem.getDifficulty(),
+                        problem.getCreatorName());
+        }
+    }
+
+    /**
+     * Replaces every number n of a map by max + 1 - n. Empty fields ("?" or "0") are kept.
+     * @param map A map
+     * @param max The highest number of the path
+     * @return The reversed map
+     */
+    private static String[][] reverse(String[][] map, int max) {
+        String[][] reversed = new String[map.length][];
+        for (int r = 0; r < map.length; r++) {
+            reversed[r] = map[r].clone();
+            for (int c = 0; c < map[r].length; c++) {
+                String cell = map[r][c];
+                if (cell.matches("\\d+") && !cell.equals("0")) {
+                    reversed[r][c] = String.valueOf(max + 1 - Integer.parseInt(cell));
+                }
+            }
+        }
+        return reversed;
+    }
+
+    /**
+     * Result of a strategy together with the strategy
+     */
+    private static class Outcome {
+        /**
+         * The strategy
+         */
+        private final Strategy strategy;
+
+        /**
+         * Its result
+         */
+        private final SolveResult result;
+
+        /**
+         * Creates an outcome
+         * @param strategy The strategy
+         * @param result Its result
+         */
+        Outcome(Strategy strategy, SolveResult result) {
+            this.strategy = strategy;
+            this.result = result;
+        }
+    }
+}
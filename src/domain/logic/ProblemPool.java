@@ -0,0 +1,387 @@
+package domain.logic;
+
+import domain.game.Difficulty;
+import domain.game.HexagonProblem;
+import domain.game.Problem;
+import domain.game.SquareProblem;
+import domain.game.TriangleProblem;
+import domain.game.Type;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * ProblemPool keeps problems generated in advance, so a new problem can be handed out right away instead of waiting
+ * for the {@link Generator}. The problems are kept in a bucket per type, difficulty, size and adjacency. A bucket is
+ * created the first time a problem of its kind is asked for, and from then on a background thread tops it up to
+ * {@link #getWatermark()} problems whenever it is taken from. A request that finds its bucket empty generates the
+ * problem itself. At most {@link #MAX_BUCKETS} buckets are kept: past them the bucket that was asked for the longest
+ * time ago is removed with its problems.
+ *
+ * A generation that throws an error is recorded in the {@link GeneratorMetrics} as
+ * {@link GeneratorMetrics.Failure#GENERATION_ERROR}. Its bucket is kept, but the background thread waits before it
+ * tries it again, twice as long after every failure in a row from {@link #RETRY_MILLIS} up to
+ * {@link #MAX_RETRY_MILLIS}. A bucket whose difficulty the {@link Generator} missed is retried in the same way, so a
+ * difficulty that can not be reached on a board does not keep the thread busy.
+ *
+ * The pool counts how many requests were served from it (hits) and how many had to generate (misses).
+ *
+ * The pool is shared by the whole application and can be used from several threads.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class ProblemPool {
+
+    /**
+     * Number of problems kept per bucket when no other watermark has been set
+     */
+    public static final int DEFAULT_WATERMARK = 3;
+
+    /**
+     * Maximum number of buckets
+     */
+    public static final int MAX_BUCKETS = 32;
+
+    /**
+     * Time the background thread waits before it tries a bucket again after a failed generation, in milliseconds
+     */
+    public static final long RETRY_MILLIS = 1000;
+
+    /**
+     * Maximum time the background thread waits before it tries a bucket again, in milliseconds
+     */
+    public static final long MAX_RETRY_MILLIS = 60000;
+
+    /**
+     * Creator name of the problems while they are in the pool, replaced by the name of the player who takes them
+     */
+    private static final String POOL_CREATOR = "pool";
+
+    /**
+     * Self instance of ProblemPool
+     */
+    private static ProblemPool problemPool = new ProblemPool();
+
+    /**
+     * Buckets by their name, the one asked for the longest time ago first
+     */
+    private final Map<String, Bucket> buckets = new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+            return size() > MAX_BUCKETS;
+        }
+    };
+
+    /**
+     * Number of problems the background thread keeps in every bucket
+     */
+    private int watermark = DEFAULT_WATERMARK;
+
+    /**
+     * Number of requests served from the pool
+     */
+    private long hits;
+
+    /**
+     * Number of requests that had to generate their problem
+     */
+    private long misses;
+
+    /**
+     * Thread that tops up the buckets, started with the first bucket
+     */
+    private Thread replenisher;
+
+    /**
+     * Creator function of the pool
+     */
+    private ProblemPool() {
+    }
+
+    /**
+     * Getter function of the pool instance
+     * @return The pool shared by the application
+     */
+    public static ProblemPool getProblemPool() {
+        return problemPool;
+    }
+
+    /**
+     * Hands out a new problem, from the pool if it has one of the asked kind and generated right away otherwise
+     * @param type The type of the problem
+     * @param numRows The number of rows of the problem
+     * @param numColumns The number of columns of the problem
+     * @param difficulty The difficulty asked for the problem
+     * @param cornerAdjacent Whether fields sharing a corner are neighbours (not relevant for hexagons)
+     * @param creatorName The name of the player who creates the problem
+     * @return A new problem, of the asked difficulty unless the {@link Generator} could not generate one of it
+     */
+    public Problem take(Type type, int numRows, int numColumns, Difficulty difficulty, boolean cornerAdjacent,
+                        String creatorName) {
+        String name = GeneratorMetrics.classOf(type, numRows, numColumns, difficulty, cornerAdjacent);
+        Problem pooled = null;
+        synchronized (this) {
+            Bucket bucket = buckets.get(name);
+            if (bucket != null) pooled = bucket.problems.poll();
+            if (pooled != null) hits++;
+            else misses++;
+            notifyAll();
+        }
+        if (pooled != null) return withCreator(pooled, creatorName);
+
+        Problem p = Generator.generate(type, numRows, numColumns, difficulty, creatorName, cornerAdjacent,
+                Generator.newSeed());
+        synchronized (this) {
+            if (!buckets.containsKey(name)) {
+                buckets.put(name, new Bucket(type, numRows, numColumns, difficulty, cornerAdjacent));
+                startReplenisher();
+                notifyAll();
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Creates the bucket of a kind of problems, so the background thread fills it before it is asked for
+     * @param type The type of the problems
+     * @param numRows The number of rows of the problems
+     * @param numColumns The number of columns of the problems
+     * @param difficulty The difficulty asked for the problems
+     * @param cornerAdjacent Whether fields sharing a corner are neighbours (not relevant for hexagons)
+     * @throws IllegalArgumentException Is thrown if a size is lower than 2
+     */
+    public synchronized void prepare(Type type, int numRows, int numColumns, Difficulty difficulty,
+                                     boolean cornerAdjacent) throws IllegalArgumentException {
+        if (numRows < 2 || numColumns < 2) throw new IllegalArgumentException("Problems need at least 2x2 fields");
+        String name = GeneratorMetrics.classOf(type, numRows, numColumns, difficulty, cornerAdjacent);
+        if (buckets.get(name) != null) return;
+        buckets.put(name, new Bucket(type, numRows, numColumns, difficulty, cornerAdjacent));
+        startReplenisher();
+        notifyAll();
+    }
+
+    /**
+     * Sets the number of problems the background thread keeps in every bucket. Buckets holding more keep them.
+     * @param watermark The number of problems per bucket, 0 to stop generating in the background
+     * @throws IllegalArgumentException Is thrown if the watermark is negative
+     */
+    public synchronized void setWatermark(int watermark) throws IllegalArgumentException {
+        if (watermark < 0) throw new IllegalArgumentException("Watermark can not be negative");
+        this.watermark = watermark;
+        notifyAll();
+    }
+
+    /**
+     * Getter function for the watermark
+     * @return The number of problems the background thread keeps in every bucket
+     */
+    public synchronized int getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * Returns how many problems every bucket holds
+     * @return The number of problems by the name of the bucket, for example "Square/Hard/10x10/C", sorted by name
+     */
+    public synchronized Map<String, Integer> getDepths() {
+        Map<String, Integer> depths = new TreeMap<>();
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            depths.put(entry.getKey(), entry.getValue().problems.size());
+        }
+        return depths;
+    }
+
+    /**
+     * Getter function for the hits
+     * @return The number of requests served from the pool
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Getter function for the misses
+     * @return The number of requests that had to generate their problem
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Removes all the buckets and their problems and sets the counts back to 0
+     */
+    public synchronized void clear() {
+        buckets.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Starts the background thread if it is not running
+     */
+    private void startReplenisher() {
+        if (replenisher != null) return;
+        replenisher = new Thread(this::replenish, "hidato-pool");
+        replenisher.setDaemon(true);
+        replenisher.start();
+    }
+
+    /**
+     * Body of the background thread: generates a problem for the emptiest bucket below the watermark, waiting while
+     * every bucket is full or waiting to be tried again. A problem that could not be generated with the difficulty of
+     * the bucket is dropped, and like a generation that throws an error, makes the bucket wait before it is tried again.
+     */
+    private void replenish() {
+        while (true) {
+            Bucket bucket;
+            synchronized (this) {
+                while ((bucket = emptiest(System.nanoTime())) == null) {
+                    try {
+                        wait(retryDelay(System.nanoTime()));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            Problem p = null;
+            try {
+                p = Generator.generate(bucket.type, bucket.numRows, bucket.numColumns,
+                        bucket.difficulty, POOL_CREATOR, bucket.cornerAdjacent, Generator.newSeed());
+            } catch (RuntimeException e) {
+                GeneratorMetrics.getGeneratorMetrics().recordFailure(bucket.name,
+                        GeneratorMetrics.Failure.GENERATION_ERROR);
+            }
+            synchronized (this) {
+                if (p != null && p.getDifficulty() == bucket.difficulty) {
+                    bucket.failures = 0;
+                    if (buckets.containsValue(bucket)) bucket.problems.add(p);
+                } else {
+                    bucket.failures++;
+                    long delay = RETRY_MILLIS << Math.min(bucket.failures - 1, 16);
+                    bucket.retryAt = System.nanoTime() + Math.min(delay, MAX_RETRY_MILLIS) * 1000000;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the bucket with the fewest problems among those below the watermark that are not waiting to be tried
+     * again
+     * @param now The current time, as returned by {@link System#nanoTime()}
+     * @return The bucket, or null if there is none
+     */
+    private Bucket emptiest(long now) {
+        Bucket emptiest = null;
+        for (Bucket bucket : buckets.values()) {
+            if (bucket.problems.size() >= watermark || bucket.retryAt - now > 0) continue;
+            if (emptiest == null || bucket.problems.size() < emptiest.problems.size()) emptiest = bucket;
+        }
+        return emptiest;
+    }
+
+    /**
+     * Returns how long the background thread has to wait until a bucket below the watermark can be tried again
+     * @param now The current time, as returned by {@link System#nanoTime()}
+     * @return The time to wait in milliseconds, at least 1, or 0 if no bucket is waiting to be tried again
+     */
+    private long retryDelay(long now) {
+        long delay = 0;
+        for (Bucket bucket : buckets.values()) {
+            if (bucket.problems.size() >= watermark || bucket.retryAt - now <= 0) continue;
+            long millis = Math.max((bucket.retryAt - now) / 1000000, 1);
+            if (delay == 0 || millis < delay) delay = millis;
+        }
+        return delay;
+    }
+
+    /**
+     * Returns a problem with the same map as a pooled one and the name of the player who takes it. The creator is part
+     * of the id of a problem, so a new problem is created.
+     * @param problem A pooled problem
+     * @param creatorName The name of the player
+     * @return The problem of the player
+     */
+    private static Problem withCreator(Problem problem, String creatorName) {
+        switch (problem.getType()) {
+            case Square:
+                return new SquareProblem(problem.getMap(), problem.getNumRows(), problem.getNumColumns(),
+                        problem.getDifficulty(), creatorName, ((SquareProblem) problem).isCornerAdjacent());
+            case Triangle:
+                return new TriangleProblem(problem.getMap(), problem.getNumRows(), problem.getNumColumns(),
+                        problem.getDifficulty(), creatorName, ((TriangleProblem) problem).isCornerAdjacent());
+            default:
+                return new HexagonProblem(problem.getMap(), problem.getNumRows(), problem.getNumColumns(),
+                        problem.getDifficulty(), creatorName);
+        }
+    }
+
+    /**
+     * Problems generated in advance of one kind
+     */
+    private static class Bucket {
+        /**
+         * Name of the bucket
+         */
+        private final String name;
+
+        /**
+         * Type of the problems
+         */
+        private final Type type;
+
+        /**
+         * Number of rows of the problems
+         */
+        private final int numRows;
+
+        /**
+         * Number of columns of the problems
+         */
+        private final int numColumns;
+
+        /**
+         * Difficulty asked for the problems
+         */
+        private final Difficulty difficulty;
+
+        /**
+         * Whether fields sharing a corner are neighbours
+         */
+        private final boolean cornerAdjacent;
+
+        /**
+         * Problems ready to be handed out, the oldest first
+         */
+        private final ArrayDeque<Problem> problems = new ArrayDeque<>();
+
+        /**
+         * Number of generations in a row that failed
+         */
+        private int failures;
+
+        /**
+         * Time before which the bucket is not tried again, as returned by {@link System#nanoTime()}
+         */
+        private long retryAt = System.nanoTime();
+
+        /**
+         * Creates an empty bucket
+         * @param type The type of the problems
+         * @param numRows The number of rows of the problems
+         * @param numColumns The number of columns of the problems
+         * @param difficulty The difficulty asked for the problems
+         * @param cornerAdjacent Whether fields sharing a corner are neighbours
+         */
+        Bucket(Type type, int numRows, int numColumns, Difficulty difficulty, boolean cornerAdjacent) {
+            this.name = GeneratorMetrics.classOf(type, numRows, numColumns, difficulty, cornerAdjacent);
+            this.type = type;
+            this.numRows = numRows;
+            this.numColumns = numColumns;
+            this.difficulty = difficulty;
+            this.cornerAdjacent = cornerAdjacent;
+        }
+    }
+}
@@ -0,0 +1,807 @@
+package domain.logic;
+
+import domain.game.Problem;
+
+import java.util.Arrays;
+
+/**
+ * PropagationSolver solves Hidato games with constraint propagation. Every number is a variable whose domain is the
+ * set of cells that can still hold it, stored as a bitset over the cells of a {@link CellGraph}. The constraints are
+ * propagated until nothing changes:
+ *
+ * - the cell of n has to be a neighbour of a cell of n - 1 and of a cell of n + 1,
+ * - a cell holds at most one number, so the cell of a number with a single candidate is removed from the others,
+ * - if every empty cell has to be covered, an empty cell that is a candidate of a single number holds that number.
+ *
+ * The domains start with the cells that are close enough to the given numbers before and after. Only when the
+ * propagation stops without solving the problem the solver branches, on the number with the fewest candidates.
+ * Changes to the domains are recorded in a trail and undone when going back, so the search keeps its own stack and
+ * does not copy the domains per branch.
+ *
+ * Many problems with few given numbers are solved by the propagation alone, where {@link Solver} has to backtrack.
+ *
+ * The solver counts the numbers placed by every kind of deduction and the branching decisions it makes, which is how
+ * {@link DifficultyRater} measures how hard a problem is. The number of decisions can be bounded; a search that goes
+ * over the bound stops like one whose token expired.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class PropagationSolver implements HidatoSolver {
+
+    /**
+     * The token is checked whenever the number of revised domains is a multiple of this mask + 1
+     */
+    private static final int STOP_CHECK_MASK = 1023;
+
+    /**
+     * Compiled adjacency graph of the problem being solved
+     */
+    private CellGraph graph;
+
+    /**
+     * Number of longs of a bitset over the cells
+     */
+    private int words;
+
+    /**
+     * Highest given number
+     */
+    private int max;
+
+    /**
+     * For every number n, the cell in which n is given, or -1 if n has to be placed
+     */
+    private int[] givenCell;
+
+    /**
+     * Bitset of the neighbours of every cell, only the words from the one of its lowest neighbour to the one of its
+     * highest neighbour
+     */
+    private long[] neighbourSets;
+
+    /**
+     * Start of the words of every cell in {@link #neighbourSets}, with an extra entry for the end
+     */
+    private int[] neighbourOffsets;
+
+    /**
+     * Index of the first word of the neighbours of every cell
+     */
+    private int[] neighbourFirstWord;
+
+    /**
+     * Bitset of the empty cells
+     */
+    private long[] freeSet;
+
+    /**
+     * Domain of every number, words longs per number
+     */
+    private long[] domains;
+
+    /**
+     * Number of candidates of every number
+     */
+    private int[] sizes;
+
+    /**
+     * Number of domains every cell is a candidate of
+     */
+    private int[] holders;
+
+    /**
+     * Whether every empty cell has to hold a number
+     */
+    private boolean coverAll;
+
+    /**
+     * Trail of the changes done to {@link #domains} (index >= 0) and {@link #sizes} (index -n - 1)
+     */
+    private int[] trailIndex;
+
+    /**
+     * Previous values of the entries of the trail
+     */
+    private long[] trailValue;
+
+    /**
+     * Number of entries of the trail
+     */
+    private int trailSize;
+
+    /**
+     * Numbers whose domain changed and whose neighbours have to be revised
+     */
+    private int[] queue;
+
+    /**
+     * Whether a number is in {@link #queue}
+     */
+    private boolean[] queued;
+
+    /**
+     * Number of numbers in {@link #queue}
+     */
+    private int queueSize;
+
+    /**
+     * Scratch bitset used to build the neighbours of a domain
+     */
+    private long[] scratch;
+
+    /**
+     * Scratch bitset of {@link #coverCheck()}: the cells that are a candidate of at least one number
+     */
+    private long[] coverOnce;
+
+    /**
+     * Scratch bitset of {@link #coverCheck()}: the cells that are a candidate of at least two numbers
+     */
+    private long[] coverTwice;
+
+    /**
+     * Scratch bitset of {@link #coverCheck()}: the cells taken by a number that has a single candidate
+     */
+    private long[] coverPlaced;
+
+    /**
+     * Token that stops the current search
+     */
+    private SolveToken token;
+
+    /**
+     * Whether the current search was stopped by the token
+     */
+    private boolean stopped;
+
+    /**
+     * Number of domains revised, used to check the token from time to time
+     */
+    private int revisions;
+
+    /**
+     * Values of the first solution found, or null
+     */
+    private int[] values;
+
+    /**
+     * Maximum number of branching decisions of a search
+     */
+    private long decisionBudget = Long.MAX_VALUE;
+
+    /**
+     * Whether the last search was stopped because it went over {@link #decisionBudget}
+     */
+    private boolean budgetExceeded;
+
+    /**
+     * Numbers placed by the last search because a consecutive number or another number left them a single cell
+     */
+    private long deductions;
+
+    /**
+     * Numbers placed by the last search because they were the only candidate of an empty cell
+     */
+    private long hiddenSingles;
+
+    /**
+     * Branching decisions made by the last search
+     */
+    private long decisions;
+
+    /**
+     * Solves the problem given by the controller
+     * @param problem Problem given by the controller
+     * @return The solved map, or null if the problem has no solution
+     */
+    @Override
+    public String[][] solve(Problem problem) {
+        return solve(problem, new SolveToken()).getSolution();
+    }
+
+    /**
+     * Solves the problem given by the controller, giving up once the passed token expires
+     * @param problem Problem given by the controller
+     * @param token Token that stops the search
+     * @return The solved map, or the reason why there is none
+     */
+    @Override
+    public SolveResult solve(Problem problem, SolveToken token) {
+        return solve(CellGraph.compile(problem), token);
+    }
+
+    /**
+     * Solves a compiled map, giving up once the passed token expires
+     * @param graph Graph of the map
+     * @param token Token that stops the search
+     * @return The solved map, or the reason why there is none
+     */
+    SolveResult solve(CellGraph graph, SolveToken token) {
+        int found = search(graph, token, 1);
+        if (found > 0) return new SolveResult(SolveResult.Status.SOLVED, printProblem());
+        if (stopped) {
+            SolveResult.Status status = token.isCancelled() ? SolveResult.Status.CANCELLED : SolveResult.Status.TIMED_OUT;
+            return new SolveResult(status, null);
+        }
+        return new SolveResult(SolveResult.Status.NO_SOLUTION, null);
+    }
+
+    /**
+     * Counts the solutions of a problem, stopping as soon as the passed number of solutions has been found
+     * @param problem Problem given by the controller
+     * @param limit Number of solutions after which the search stops, at least 1
+     * @return The number of solutions found, at most limit
+     */
+    @Override
+    public int countSolutions(Problem problem, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("Limit must be at least 1");
+        return search(CellGraph.compile(problem), new SolveToken(), limit);
+    }
+
+    /**
+     * Counts the solutions of a problem like {@link #countSolutions(Problem, int)}, giving up once the passed token
+     * expires
+     * @param problem Problem given by the controller
+     * @param limit Number of solutions after which the search stops, at least 1
+     * @param token Token that stops the search
+     * @return The number of solutions found, at most limit, or -1 if the search was stopped before the count was
+     *         complete
+     */
+    @Override
+    public int countSolutions(Problem problem, int limit, SolveToken token) {
+        if (limit < 1) throw new IllegalArgumentException("Limit must be at least 1");
+        int found = search(CellGraph.compile(problem), token, limit);
+        return stopped && found < limit ? -1 : found;
+    }
+
+    /**
+     * Counts the solutions of a compiled map, stopping as soon as the passed number of solutions has been found
+     * @param graph Graph of the map
+     * @param limit Number of solutions after which the search stops, at least 1
+     * @return The number of solutions found, at most limit. If the search went over the decision budget the count
+     *         is not complete and {@link #isBudgetExceeded()} returns true.
+     */
+    int countSolutions(CellGraph graph, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("Limit must be at least 1");
+        return search(graph, new SolveToken(), limit);
+    }
+
+    /**
+     * Prints the first solution found by the last call
+     * @return The map with the number of every cell
+     */
+    @Override
+    public String[][] printProblem() {
+        return graph.toMap(values);
+    }
+
+    /**
+     * Bounds the number of branching decisions of the next searches. A search that goes over the bound stops and
+     * {@link #isBudgetExceeded()} returns true; {@link #solve(Problem, SolveToken)} reports it as
+     * {@link SolveResult.Status#TIMED_OUT}.
+     * @param budget The maximum number of decisions, {@link Long#MAX_VALUE} for no bound
+     */
+    public void setDecisionBudget(long budget) {
+        if (budget < 0) throw new IllegalArgumentException("Budget can not be negative");
+        decisionBudget = budget;
+    }
+
+    /**
+     * Returns whether the last search was stopped because it went over the decision budget
+     * @return true if the budget was exceeded
+     */
+    public boolean isBudgetExceeded() {
+        return budgetExceeded;
+    }
+
+    /**
+     * Getter function for the deductions
+     * @return The numbers placed by the last search because a consecutive number or another number left them a
+     * single cell
+     */
+    public long getDeductions() {
+        return deductions;
+    }
+
+    /**
+     * Getter function for the hidden singles
+     * @return The numbers placed by the last search because they were the only candidate of an empty cell
+     */
+    public long getHiddenSingles() {
+        return hiddenSingles;
+    }
+
+    /**
+     * Getter function for the decisions
+     * @return The branching decisions made by the last search
+     */
+    public long getDecisions() {
+        return decisions;
+    }
+
+    /**
+     * Propagates and branches until the passed number of solutions has been found or the token expires
+     * @param graph Compiled graph of the problem
+     * @param token Token that stops the search
+     * @param limit Number of solutions after which the search stops
+     * @return The number of solutions found, at most limit
+     */
+    private int search(CellGraph graph, SolveToken token, int limit) {
+        this.token = token;
+        stopped = false;
+        budgetExceeded = false;
+        deductions = 0;
+        hiddenSingles = 0;
+        decisions = 0;
+        revisions = 0;
+        values = null;
+        this.graph = graph;
+        if (!prepare()) return 0;
+        if (max == 1) {
+            values = graph.getValues();
+            return 1;
+        }
+
+        int found = 0;
+        int[] branchVariable = new int[max + 1];
+        int[] branchTrail = new int[max + 1];
+        long[][] branchCandidates = new long[max + 1][];
+        int depth = 0;
+        boolean consistent = propagate();
+        while (!stopped) {
+            if (consistent) {
+                int variable = chooseVariable();
+                if (variable < 0) {
+                    if (found == 0) values = currentValues();
+                    if (++found >= limit) return found;
+                }
+                else {
+                    branchVariable[depth] = variable;
+                    branchTrail[depth] = trailSize;
+                    branchCandidates[depth] = Arrays.copyOfRange(domains, variable * words, (variable + 1) * words);
+                    depth++;
+                }
+            }
+            if (depth == 0) return found;
+
+            int top = depth - 1;
+            int cell = takeCandidate(branchCandidates[top]);
+            if (cell < 0) {
+                depth--;
+                consistent = false;
+                continue;
+            }
+            if (++decisions > decisionBudget) {
+                stopped = true;
+                budgetExceeded = true;
+                return found;
+            }
+            undo(branchTrail[top]);
+            assign(branchVariable[top], cell);
+            consistent = propagate();
+        }
+        return found;
+    }
+
+    /**
+     * Builds the initial domains from the compiled graph
+     * @return false if the problem has clearly no solution
+     */
+    private boolean prepare() {
+        int[] cells = graph.getValues();
+        int size = cells.length;
+        words = (size + 63) >>> 6;
+
+        max = 0;
+        int free = 0;
+        for (int v : cells) {
+            if (v > max) max = v;
+            if (v == CellGraph.FREE) free++;
+        }
+        if (max == 0) return false;
+        givenCell = new int[max + 1];
+        Arrays.fill(givenCell, -1);
+        int givens = 0;
+        for (int i = 0; i < size; i++) {
+            if (cells[i] > 0) {
+                if (givenCell[cells[i]] < 0) givens++;
+                givenCell[cells[i]] = i;
+            }
+        }
+        if (free < max - givens) return false;
+        coverAll = free == max - givens;
+
+        neighbourOffsets = new int[size + 1];
+        neighbourFirstWord = new int[size];
+        for (int i = 0; i < size; i++) {
+            int first = words, last = -1;
+            for (int k = graph.offsets[i]; k < graph.offsets[i + 1]; k++) {
+                first = Math.min(first, graph.neighbours[k] >>> 6);
+                last = Math.max(last, graph.neighbours[k] >>> 6);
+            }
+            neighbourFirstWord[i] = first;
+            neighbourOffsets[i + 1] = neighbourOffsets[i] + Math.max(0, last - first + 1);
+        }
+        neighbourSets = new long[neighbourOffsets[size]];
+        freeSet = new long[words];
+        for (int i = 0; i < size; i++) {
+            if (cells[i] == CellGraph.FREE) freeSet[i >>> 6] |= 1L << i;
+            for (int k = graph.offsets[i]; k < graph.offsets[i + 1]; k++) {
+                int x = graph.neighbours[k];
+                neighbourSets[neighbourOffsets[i] + (x >>> 6) - neighbourFirstWord[i]] |= 1L << x;
+            }
+        }
+
+        domains = new long[(max + 1) * words];
+        sizes = new int[max + 1];
+        boolean bipartite = graph.isBipartite();
+        int[] fromPrevious = new int[size];
+        int[] fromNext = new int[size];
+        int[] exploredNext = new int[size];
+        int[] exploredPrevious = new int[size];
+        Arrays.fill(fromPrevious, Integer.MAX_VALUE);
+        Arrays.fill(fromNext, Integer.MAX_VALUE);
+        int previous = -1;
+        for (int next = 1; next <= max; next++) {
+            if (givenCell[next] < 0) continue;
+            domains[next * words + (givenCell[next] >>> 6)] = 1L << givenCell[next];
+            sizes[next] = 1;
+            int first = previous > 0 ? previous : 0;
+            if (next - first > 1) {
+                int reach = next - first;
+                int count = graph.distancesFrom(givenCell[next], reach, fromNext, exploredNext);
+                int countPrevious = 0;
+                if (previous > 0) {
+                    countPrevious = graph.distancesFrom(givenCell[previous], reach, fromPrevious, exploredPrevious);
+                }
+                for (int n = first + 1; n < next; n++) {
+                    for (int e = 0; e < count; e++) {
+                        int i = exploredNext[e];
+                        if (cells[i] != CellGraph.FREE) continue;
+                        if (previous > 0 && !withinReach(fromPrevious[i], n - previous, bipartite)) continue;
+                        if (!withinReach(fromNext[i], next - n, bipartite)) continue;
+                        domains[n * words + (i >>> 6)] |= 1L << i;
+                        sizes[n]++;
+                    }
+                    if (sizes[n] == 0) return false;
+                }
+                for (int e = 0; e < count; e++) fromNext[exploredNext[e]] = Integer.MAX_VALUE;
+                for (int e = 0; e < countPrevious; e++) fromPrevious[exploredPrevious[e]] = Integer.MAX_VALUE;
+            }
+            previous = next;
+        }
+
+        trailIndex = new int[1024];
+        trailValue = new long[1024];
+        trailSize = 0;
+        queue = new int[max + 1];
+        queued = new boolean[max + 1];
+        queueSize = 0;
+        scratch = new long[words];
+        coverOnce = new long[words];
+        coverTwice = new long[words];
+        coverPlaced = new long[words];
+        holders = new int[size];
+        for (int i = 0; i < domains.length; i++) changeHolders(i, 0, domains[i]);
+        for (int n = 1; n <= max; n++) enqueue(n);
+        return true;
+    }
+
+    /**
+     * Checks whether a cell at a distance can be linked with a path of the passed length
+     * @param distance The distance between the cells
+     * @param steps The length of the path
+     * @param bipartite Whether the graph is bipartite, so the parities have to match
+     * @return true if the path can exist
+     */
+    private static boolean withinReach(int distance, int steps, boolean bipartite) {
+        return distance <= steps && (!bipartite || ((steps - distance) & 1) == 0);
+    }
+
+    /**
+     * Revises the domains of the neighbours of the queued numbers until nothing changes
+     * @return false if a domain became empty or an empty cell can not be covered
+     */
+    private boolean propagate() {
+        while (true) {
+            while (queueSize > 0) {
+                int n = queue[--queueSize];
+                queued[n] = false;
+                if ((++revisions & STOP_CHECK_MASK) == 0 && token.isExpired()) {
+                    stopped = true;
+                    clearQueue();
+                    return false;
+                }
+                if (sizes[n] == 1 && givenCell[n] < 0 && !removeFromOthers(n)) {
+                    clearQueue();
+                    return false;
+                }
+                if ((n > 1 && !revise(n - 1, n)) || (n < max && !revise(n + 1, n))) {
+                    clearQueue();
+                    return false;
+                }
+            }
+            int assigned = coverCheck();
+            if (assigned < 0) {
+                clearQueue();
+                return false;
+            }
+            if (assigned == 0) return true;
+        }
+    }
+
+    /**
+     * Restricts the domain of a number to the neighbours of the domain of a consecutive number
+     * @param target The number whose domain is restricted
+     * @param source A number consecutive to target
+     * @return false if the domain of target became empty
+     */
+    private boolean revise(int target, int source) {
+        Arrays.fill(scratch, 0);
+        int base = source * words;
+        for (int w = 0; w < words; w++) {
+            long bits = domains[base + w];
+            while (bits != 0) {
+                int cell = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int v = neighbourFirstWord[cell];
+                for (int k = neighbourOffsets[cell]; k < neighbourOffsets[cell + 1]; k++) {
+                    scratch[v++] |= neighbourSets[k];
+                }
+            }
+        }
+        return restrict(target, scratch);
+    }
+
+    /**
+     * Intersects the domain of a number with a bitset
+     * @param n A number
+     * @param mask The cells allowed for n
+     * @return false if the domain of n became empty
+     */
+    private boolean restrict(int n, long[] mask) {
+        int base = n * words;
+        int size = 0;
+        boolean changed = false;
+        for (int w = 0; w < words; w++) {
+            long old = domains[base + w];
+            long now = old & mask[w];
+            if (now != old) {
+                setDomainWord(base + w, now);
+                changed = true;
+            }
+            size += Long.bitCount(now);
+        }
+        if (!changed) return true;
+        setSize(n, size);
+        if (size == 0) return false;
+        if (size == 1) deductions++;
+        enqueue(n);
+        return true;
+    }
+
+    /**
+     * Removes the only candidate of a placed number from the domains of the other numbers
+     * @param n A number that is not given and has a single candidate
+     * @return false if another domain became empty
+     */
+    private boolean removeFromOthers(int n) {
+        int cell = singleCell(n);
+        int w = cell >>> 6;
+        long bit = 1L << cell;
+        for (int m = 1; m <= max && holders[cell] > 1; m++) {
+            if (m == n || givenCell[m] >= 0) continue;
+            int index = m * words + w;
+            if ((domains[index] & bit) == 0) continue;
+            setDomainWord(index, domains[index] & ~bit);
+            setSize(m, sizes[m] - 1);
+            if (sizes[m] == 0) return false;
+            if (sizes[m] == 1) deductions++;
+            enqueue(m);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the empty cells that are a candidate of a single number. If every empty cell has to be covered such a
+     * cell is assigned to its number, and an empty cell that is no candidate at all means there is no solution.
+     * @return The number of assignments made, or -1 if an empty cell can not be covered
+     */
+    private int coverCheck() {
+        if (!coverAll) return 0;
+        long[] once = coverOnce;
+        long[] twice = coverTwice;
+        long[] placed = coverPlaced;
+        Arrays.fill(once, 0);
+        Arrays.fill(twice, 0);
+        Arrays.fill(placed, 0);
+        for (int n = 1; n <= max; n++) {
+            if (givenCell[n] >= 0) continue;
+            int base = n * words;
+            boolean single = sizes[n] == 1;
+            for (int w = 0; w < words; w++) {
+                long d = domains[base + w];
+                twice[w] |= once[w] & d;
+                once[w] |= d;
+                if (single) placed[w] |= d;
+            }
+        }
+        int assigned = 0;
+        for (int w = 0; w < words; w++) {
+            if ((freeSet[w] & ~once[w]) != 0) return -1;
+            long single = once[w] & ~twice[w] & ~placed[w];
+            while (single != 0) {
+                int cell = (w << 6) + Long.numberOfTrailingZeros(single);
+                single &= single - 1;
+                for (int n = 1; n <= max; n++) {
+                    if (givenCell[n] < 0 && (domains[n * words + w] & (1L << cell)) != 0) {
+                        if (sizes[n] > 1) {
+                            assign(n, cell);
+                            assigned++;
+                            hiddenSingles++;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        return assigned;
+    }
+
+    /**
+     * Restricts the domain of a number to a single cell
+     * @param n A number
+     * @param cell The cell of n
+     */
+    private void assign(int n, int cell) {
+        int base = n * words;
+        for (int w = 0; w < words; w++) {
+            long now = w == (cell >>> 6) ? 1L << cell : 0;
+            if (domains[base + w] != now) setDomainWord(base + w, now);
+        }
+        setSize(n, 1);
+        enqueue(n);
+    }
+
+    /**
+     * Chooses the number to branch on
+     * @return The number with the fewest candidates among those with more than one, or -1 if all are placed
+     */
+    private int chooseVariable() {
+        int best = -1;
+        for (int n = 1; n <= max; n++) {
+            if (sizes[n] > 1 && (best < 0 || sizes[n] < sizes[best])) best = n;
+        }
+        return best;
+    }
+
+    /**
+     * Takes the lowest cell out of a set of candidates
+     * @param candidates A bitset of cells, modified
+     * @return The cell taken, or -1 if the set is empty
+     */
+    private static int takeCandidate(long[] candidates) {
+        for (int w = 0; w < candidates.length; w++) {
+            if (candidates[w] != 0) {
+                int cell = (w << 6) + Long.numberOfTrailingZeros(candidates[w]);
+                candidates[w] &= candidates[w] - 1;
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the only candidate of a number
+     * @param n A number with a single candidate
+     * @return The cell of n
+     */
+    private int singleCell(int n) {
+        int base = n * words;
+        for (int w = 0; w < words; w++) {
+            if (domains[base + w] != 0) return (w << 6) + Long.numberOfTrailingZeros(domains[base + w]);
+        }
+        return -1;
+    }
+
+    /**
+     * Builds the values of the cells from the domains, once every number has a single candidate
+     * @return The value of every cell
+     */
+    private int[] currentValues() {
+        int[] cells = graph.getValues();
+        for (int n = 1; n <= max; n++) cells[singleCell(n)] = n;
+        return cells;
+    }
+
+    /**
+     * Changes a word of the domains, recording its previous value in the trail
+     * @param index The index of the word in {@link #domains}
+     * @param value The new value
+     */
+    private void setDomainWord(int index, long value) {
+        record(index, domains[index]);
+        changeHolders(index, domains[index], value);
+        domains[index] = value;
+    }
+
+    /**
+     * Updates the number of domains of the cells of a word of the domains that changes
+     * @param index The index of the word in {@link #domains}
+     * @param before The previous value of the word
+     * @param after The new value of the word
+     */
+    private void changeHolders(int index, long before, long after) {
+        int first = (index % words) << 6;
+        long removed = before & ~after;
+        long added = after & ~before;
+        while (removed != 0) {
+            holders[first + Long.numberOfTrailingZeros(removed)]--;
+            removed &= removed - 1;
+        }
+        while (added != 0) {
+            holders[first + Long.numberOfTrailingZeros(added)]++;
+            added &= added - 1;
+        }
+    }
+
+    /**
+     * Changes the size of a domain, recording its previous value in the trail
+     * @param n A number
+     * @param size The new number of candidates of n
+     */
+    private void setSize(int n, int size) {
+        record(-n - 1, sizes[n]);
+        sizes[n] = size;
+    }
+
+    /**
+     * Adds an entry to the trail
+     * @param index The index of the entry
+     * @param value The previous value
+     */
+    private void record(int index, long value) {
+        if (trailSize == trailIndex.length) {
+            trailIndex = Arrays.copyOf(trailIndex, trailSize * 2);
+            trailValue = Arrays.copyOf(trailValue, trailSize * 2);
+        }
+        trailIndex[trailSize] = index;
+        trailValue[trailSize] = value;
+        trailSize++;
+    }
+
+    /**
+     * Undoes the changes recorded in the trail after a position
+     * @param position The size the trail goes back to
+     */
+    private void undo(int position) {
+        while (trailSize > position) {
+            trailSize--;
+            int index = trailIndex[trailSize];
+            if (index >= 0) {
+                changeHolders(index, domains[index], trailValue[trailSize]);
+                domains[index] = trailValue[trailSize];
+            }
+            else sizes[-index - 1] = (int) trailValue[trailSize];
+        }
+    }
+
+    /**
+     * Adds a number to the queue of changed domains
+     * @param n A number
+     */
+    private void enqueue(int n) {
+        if (!queued[n]) {
+            queued[n] = true;
+            queue[queueSize++] = n;
+        }
+    }
+
+    /**
+     * Empties the queue of changed domains
+     */
+    private void clearQueue() {
+        while (queueSize > 0) queued[queue[--queueSize]] = false;
+    }
+}
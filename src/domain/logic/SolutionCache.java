@@ -0,0 +1,236 @@
+package domain.logic;
+
+import domain.game.Problem;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SolutionCache keeps the solved maps of the problems solved last, so a problem that is solved again is answered with
+ * a lookup. The cache holds at most {@link #getCapacity()} solutions and drops the least recently used one when it is
+ * full.
+ *
+ * The solutions are keyed by {@link Problem#getId()}, the {@link domain.game.Type} and the adjacency of the problem.
+ * The id of a problem is computed when it is created, so every entry also keeps the map that was solved and a lookup
+ * only hits if the map of the problem is still the same. {@link Problem#updateMap(String[][])} removes the entry of
+ * the problem right away.
+ *
+ * The cache is shared by the whole application and can be used from several threads.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class SolutionCache {
+
+    /**
+     * Number of solutions kept when no other capacity has been set
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Self instance of SolutionCache
+     */
+    private static SolutionCache solutionCache = new SolutionCache();
+
+    /**
+     * Cached solutions in access order, the least recently used first
+     */
+    private final LinkedHashMap<Long, Entry> entries;
+
+    /**
+     * Maximum number of cached solutions
+     */
+    private int capacity = DEFAULT_CAPACITY;
+
+    /**
+     * Number of lookups that found a solution
+     */
+    private long hits;
+
+    /**
+     * Number of lookups that did not find a solution
+     */
+    private long misses;
+
+    /**
+     * Creator function of the cache
+     */
+    private SolutionCache() {
+        entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Getter function of the cache instance
+     * @return The cache shared by the application
+     */
+    public static SolutionCache getSolutionCache() {
+        return solutionCache;
+    }
+
+    /**
+     * Looks up the solution of a problem
+     * @param problem A problem
+     * @return A copy of the cached solution, or null if the problem is not cached
+     */
+    public synchronized String[][] get(Problem problem) {
+        Entry entry = entries.get(keyOf(problem));
+        if (entry == null || !Arrays.deepEquals(entry.map, problem.getMap())) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copy(entry.solution);
+    }
+
+    /**
+     * Stores the solution of a problem
+     * @param problem A problem
+     * @param solution The solved map of the problem
+     */
+    public synchronized void put(Problem problem, String[][] solution) {
+        entries.put(keyOf(problem), new Entry(problem.getMap(), copy(solution)));
+    }
+
+    /**
+     * Solves a problem with the passed solver unless its solution is cached, and caches the solution found
+     * @param problem A problem
+     * @param solver Solver used if the problem is not cached
+     * @return The solved map, or null if the problem has no solution
+     */
+    public String[][] solve(Problem problem, HidatoSolver solver) {
+        String[][] solution = get(problem);
+        if (solution == null) {
+            solution = solver.solve(problem);
+            if (solution != null) put(problem, solution);
+        }
+        return solution;
+    }
+
+    /**
+     * Solves a problem with the passed solver unless its solution is cached, and caches the solution found. The search
+     * stops when the token is cancelled or expires.
+     * @param problem A problem
+     * @param solver Solver used if the problem is not cached
+     * @param token Token that stops the search
+     * @return The outcome of the search, solved without statistics if the solution was cached
+     */
+    public SolveResult solve(Problem problem, HidatoSolver solver, SolveToken token) {
+        String[][] solution = get(problem);
+        if (solution != null) return new SolveResult(SolveResult.Status.SOLVED, solution);
+        SolveResult result = solver.solve(problem, token);
+        if (result.isSolved()) put(problem, result.getSolution());
+        return result;
+    }
+
+    /**
+     * Removes the solution of a problem, if it is cached
+     * @param problem A problem whose map is going to change
+     */
+    public synchronized void invalidate(Problem problem) {
+        entries.remove(keyOf(problem));
+    }
+
+    /**
+     * Removes all the cached solutions
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Sets the maximum number of cached solutions, dropping the least recently used ones if there are more
+     * @param capacity The maximum number of solutions, 0 to disable the cache
+     */
+    public synchronized void setCapacity(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Capacity can not be negative");
+        this.capacity = capacity;
+        while (entries.size() > capacity) {
+            Long eldest = entries.keySet().iterator().next();
+            entries.remove(eldest);
+        }
+    }
+
+    /**
+     * Getter function for the capacity
+     * @return The maximum number of cached solutions
+     */
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of cached solutions
+     * @return The number of solutions in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Getter function for the hits
+     * @return The number of lookups that found a solution
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Getter function for the misses
+     * @return The number of lookups that did not find a solution
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Builds the key of a problem from its id, its type and its adjacency
+     * @param problem A problem
+     * @return The key of the problem in {@link #entries}
+     */
+    private static long keyOf(Problem problem) {
+        int kind = problem.getType().ordinal() * 2 + (CellGraph.isCornerAdjacent(problem) ? 1 : 0);
+        return ((long) problem.getId() << 32) | kind;
+    }
+
+    /**
+     * Copies a map, so the cached solutions can not be modified by the callers
+     * @param map A map
+     * @return A copy of the map
+     */
+    private static String[][] copy(String[][] map) {
+        String[][] copy = new String[map.length][];
+        for (int r = 0; r < map.length; r++) copy[r] = map[r].clone();
+        return copy;
+    }
+
+    /**
+     * A cached solution together with the map that was solved
+     */
+    private static class Entry {
+        /**
+         * Map of the problem when it was solved
+         */
+        private final String[][] map;
+
+        /**
+         * Solved map
+         */
+        private final String[][] solution;
+
+        /**
+         * Creates an entry
+         * @param map Map of the problem when it was solved
+         * @param solution Solved map
+         */
+        Entry(String[][] map, String[][] solution) {
+            this.map = map;
+            this.solution = solution;
+        }
+    }
+}
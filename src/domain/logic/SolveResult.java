@@ -0,0 +1,109 @@
+package domain.logic;
+
+/**
+ * SolveResult is the outcome of {@link Solver#solve(domain.game.Problem, SolveToken)}. It tells apart a problem
+ * without solution from a search that was stopped before it could decide.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class SolveResult {
+
+    /**
+     * Possible outcomes of a search
+     */
+    public enum Status {
+        /**
+         * A solution was found
+         */
+        SOLVED,
+        /**
+         * The whole search tree was explored and the problem has no solution
+         */
+        NO_SOLUTION,
+        /**
+         * The deadline of the token was reached before the search finished
+         */
+        TIMED_OUT,
+        /**
+         * The token was cancelled before the search finished
+         */
+        CANCELLED
+    }
+
+    /**
+     * Outcome of the search
+     */
+    private final Status status;
+
+    /**
+     * Solved map, only when the status is {@link Status#SOLVED}
+     */
+    private final String[][] solution;
+
+    /**
+     * Statistics of the search, or null if the solver does not record them
+     */
+    private final SolverStats stats;
+
+    /**
+     * Creates a result without statistics
+     * @param status Outcome of the search
+     * @param solution Solved map, or null if no solution was found
+     */
+    SolveResult(Status status, String[][] solution) {
+        this(status, solution, null);
+    }
+
+    /**
+     * Creates a result
+     * @param status Outcome of the search
+     * @param solution Solved map, or null if no solution was found
+     * @param stats Statistics of the search, or null
+     */
+    SolveResult(Status status, String[][] solution, SolverStats stats) {
+        this.status = status;
+        this.solution = solution;
+        this.stats = stats;
+    }
+
+    /**
+     * Getter function for the status
+     * @return The outcome of the search
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Getter function for the solution
+     * @return The solved map, or null if the status is not {@link Status#SOLVED}
+     */
+    public String[][] getSolution() {
+        return solution;
+    }
+
+    /**
+     * Getter function for the statistics
+     * @return How hard the search was, or null if the solver does not record it
+     */
+    public SolverStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns whether a solution was found
+     * @return true if the status is {@link Status#SOLVED}
+     */
+    public boolean isSolved() {
+        return status == Status.SOLVED;
+    }
+
+    /**
+     * Returns whether the search was stopped by its token before it could decide
+     * @return true if the status is {@link Status#TIMED_OUT} or {@link Status#CANCELLED}
+     */
+    public boolean isStopped() {
+        return status == Status.TIMED_OUT || status == Status.CANCELLED;
+    }
+}
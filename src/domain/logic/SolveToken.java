@@ -0,0 +1,89 @@
+package domain.logic;
+
+/**
+ * SolveToken bounds the time a {@link Solver} may spend on a problem. A token expires when its deadline is reached
+ * or when {@link #cancel()} is called, possibly from another thread. The search checks the token every few thousand
+ * steps, so checking it has to be cheap: it is one volatile read and, if there is a deadline, one call to
+ * {@link System#nanoTime()}.
+ *
+ * A token can be shared by several searches, which are then all stopped together. A child token expires with its
+ * parent but can also be cancelled on its own, which stops one search of a group without touching the others.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class SolveToken {
+
+    /**
+     * Moment when the token expires, in the time base of {@link System#nanoTime()}
+     */
+    private final long deadline;
+
+    /**
+     * Whether the token has a deadline
+     */
+    private final boolean timed;
+
+    /**
+     * Whether {@link #cancel()} has been called
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Token whose expiry also expires this one, or null
+     */
+    private final SolveToken parent;
+
+    /**
+     * Creates a token without deadline, which only expires when it is cancelled
+     */
+    public SolveToken() {
+        this.deadline = 0;
+        this.timed = false;
+        this.parent = null;
+    }
+
+    /**
+     * Creates a token that expires after the passed time
+     * @param timeoutMillis Time in milliseconds after which the token expires
+     */
+    public SolveToken(long timeoutMillis) {
+        if (timeoutMillis < 0) throw new IllegalArgumentException("Timeout can not be negative");
+        this.deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        this.timed = true;
+        this.parent = null;
+    }
+
+    /**
+     * Creates a token that expires when the passed token expires or when it is cancelled itself
+     * @param parent The token this one depends on
+     */
+    public SolveToken(SolveToken parent) {
+        this.deadline = 0;
+        this.timed = false;
+        this.parent = parent;
+    }
+
+    /**
+     * Cancels the token, so every search using it stops as soon as possible
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns whether the token has been cancelled with {@link #cancel()}
+     * @return true if the token has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns whether the searches using this token have to stop
+     * @return true if the token has been cancelled, its deadline has been reached or its parent has expired
+     */
+    public boolean isExpired() {
+        return cancelled || (timed && System.nanoTime() - deadline >= 0) || (parent != null && parent.isExpired());
+    }
+}
@@ -1,373 +1,500 @@
 package domain.logic;
 
 import domain.game.Problem;
-import domain.game.SquareProblem;
-import domain.game.TriangleProblem;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Solver is the algorithm which manages to solve Hidato games using the recursive technique.
+ * Solver is the algorithm which manages to solve Hidato games using the backtracking technique.
+ * The problem is compiled once into a {@link CellGraph} and searched by a {@link PathSearch}, which keeps its own
+ * explicit stack, so big maps can be solved without risking a {@link StackOverflowError}.
+ *
+ * With a parallelism greater than 1 the first placements after the number 1 are enumerated and the subtree below
+ * every one of them is searched as a task of a {@link ForkJoinPool}. The result is always the same solution the
+ * sequential search finds: a task is only cancelled once a task that comes before it in search order has found a
+ * solution.
+ *
+ * {@link #countSolutions(Problem, int)} uses the same search to count solutions up to a limit, which tells whether a
+ * problem has a unique solution.
+ *
+ * {@link #solve(Problem, SolveToken)} bounds the search with a {@link SolveToken}: the search stops once the token
+ * expires and the returned {@link SolveResult} tells a stopped search apart from a problem without solution.
+ *
+ * Every search, solving or counting, measures how hard it was with a {@link SolverStats}, which is returned with the
+ * {@link SolveResult}, kept until the next search and added to the {@link SolverMetrics} of the application, unless
+ * the caller records it itself (see {@link #setRecordMetrics(boolean)}).
+ *
  * The class the following global variables:
- * 1 int matrix called matrixProblem
- * 1 int arrayList called numDonats
- * 2 Strings called type and ang that are used to know the type of the game and the adjacencies.
- * 1 Tuple called inici that give us the initial position to start solving the Hidato game
+ * 1 CellGraph called graph with the neighbours of every cell
+ * 1 int array called values with the current number of every cell
+ * 1 int called parallelism with the number of threads used to search
+ * 1 SolveToken called token that stops the current search
+ * 1 boolean called stopped telling whether the current search was stopped by the token
+ * 1 SolverStats.Counter called counter with the counts of the current search
+ * 1 SolverStats called stats with the statistics of the last search
+ * 1 boolean called recordMetrics telling whether the statistics are added to the {@link SolverMetrics}
  * @author Sergi Serrano Casalins
  * @author Samuel Hoenle
  */
 
-public class Solver
+public class Solver implements HidatoSolver
 {
     /**
-     * Int matrix bigger than the original string matrix of the problem used to solve the game
+     * Number of subtrees created per thread in parallel mode, so that threads that finish early can steal work
      */
-    private int[][] matrixProblem;
+    private static final int TASKS_PER_THREAD = 8;
 
     /**
-     * Int arrayList with the numbers that the problem has at the beggining of the game.
-     * It will contain other numbers if the cells are filled with "#"(-1), "*"(-2) or if it is a number(0)
+     * Maximum number of placements enumerated to create the subtrees in parallel mode
      */
-    private int[] numDonats;
+    private static final int MAX_SPLIT_DEPTH = 12;
 
     /**
-     * Initial tuple with the coordinates x and y of the number 1 in the game
+     * Pools shared by all the solvers with the same parallelism
      */
-    public Tuple inici;
+    private static final Map<Integer, ForkJoinPool> pools = new ConcurrentHashMap<>();
 
     /**
-     * Strings used to know the adjencies and the type of the problem we want to solve
+     * Number of threads used to search
      */
-    private String ang, type;
+    private final int parallelism;
 
     /**
-     * Private inner class used to know the coordinates of every position needed to solve the game
+     * Compiled adjacency graph of the problem being solved
      */
-    private class Tuple {
-        /**
-         * X coordinate
-         */
-        int x;
+    private CellGraph graph;
 
-        /**
-         * Y coordinate
-         */
-        int y;
+    /**
+     * Current value of every cell of the graph.
+     * It will contain -1 for "#", -2 for "*", 0 for an empty cell or the number of the cell
+     */
+    private int[] values;
 
-        /**
-         * Creator function for the inner class Tuple
-         * @param a X coordinate
-         * @param b Y coordinate
-         */
-        public Tuple(int a, int b) {
-            this.x = a;
-            this.y = b;
-        }
+    /**
+     * Token that stops the current search
+     */
+    private SolveToken token;
 
-        /**
-         * Getter function for X coordinate
-         * @return The X coordinate
-         */
-        public int getX() {
-            return x;
-        }
+    /**
+     * Whether the current search was stopped by the token before it finished
+     */
+    private volatile boolean stopped;
 
-        /**
-         * Getter function for Y coordinate
-         * @return The Y cordinate
-         */
-        public int getY() {
-            return y;
-        }
+    /**
+     * Counts of the current search, added up from all its {@link PathSearch} objects
+     */
+    private SolverStats.Counter counter;
+
+    /**
+     * Statistics of the last search
+     */
+    private SolverStats stats;
+
+    /**
+     * Whether the statistics of every search are added to the {@link SolverMetrics}
+     */
+    private boolean recordMetrics = true;
+
+    /**
+     * Creates a sequential solver
+     */
+    public Solver() {
+        this(1);
     }
 
     /**
-     * Global variable initializer function.
-     * Thefunction will analyze the problem fields and treat them according to their type.
-     * Moreover,it will sort the numbers given in the initial problem.
+     * Creates a solver that searches with the passed number of threads
+     * @param parallelism Number of threads, 1 for a sequential search
+     */
+    public Solver(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Solves the problem given by the controller.
+     * The function compiles the problem into a {@link CellGraph} and searches a path from the number 1 to the
+     * highest given number passing through all the given numbers.
      * @param problem Problem given by the controller
+     * @return The solved map, or null if the problem has no solution
      */
+    @Override
     public String[][] solve(Problem problem) {
-        int row, col;
-        String[][] givenMatrix;
-        if (problem instanceof SquareProblem){
-            row = problem.getNumRows();
-            col = problem.getNumColumns();
-            givenMatrix = problem.getMap();
-            if (((SquareProblem) problem).isCornerAdjacent()) ang = "CA";
-            else ang ="C";
-            matrixProblem = new int[row+2][col+2];
-            type = "S";
-        }
-        else if (problem instanceof TriangleProblem) {
-            row = problem.getNumRows();
-            col = problem.getNumColumns();
-            givenMatrix = problem.getMap();
-            if (((TriangleProblem) problem).isCornerAdjacent()) ang = "CA";
-            else ang ="C";
-            matrixProblem = new int[row+4][col+4];
-            type = "T";
-        }
-        else {
-            row = problem.getNumRows();
-            col = problem.getNumColumns();
-            givenMatrix = problem.getMap();
-            matrixProblem = new int[row+4][col+4];
-            type = "H";
-        }
+        return solve(problem, new SolveToken()).getSolution();
+    }
 
-        List<Integer> llista = new ArrayList<>(givenMatrix.length*givenMatrix[0].length);
-
-        for (int i = 0; i < matrixProblem.length; i++)
-            for (int j = 0; j < matrixProblem[0].length; j++) matrixProblem[i][j] = -1;
-
-        for (int r = 0; r < givenMatrix.length; r++) {
-            String[] fila = givenMatrix[r];
-            for (int c = 0; c < givenMatrix[0].length; c++) {
-                String cell = fila[c];
-                switch (cell) {
-                    case "?":
-                        if (type.equals("S"))
-                            matrixProblem[r+1][c+1] = 0;
-                        else
-                            matrixProblem[r+2][c+2] = 0;
-                        break;
-                    case "#":
-                        break;
-                    case "*":
-                        if (type.equals("S"))
-                            matrixProblem[r+1][c+1] = -2;
-                        else
-                            matrixProblem[r+2][c+2] = -2;
-                        break;
-                    default:
-                        int val = Integer.parseInt(cell);
-                        if (type.equals("S"))
-                            matrixProblem[r+1][c+1] = val;
-                        else
-                            matrixProblem[r+2][c+2] = val;
-                        llista.add(val);
-                        if (val == 1) {
-                            if (type.equals("S"))
-                                inici = new Tuple(r+1,c+1);
-                            else
-                                inici = new Tuple(r+2,c+2);
-                        }
-                }
-            }
-        }
-        //Ordenem els números que ens donen i els afegin a una variable global numDonats per poder treballar amb ells
-        Collections.sort(llista);
-        numDonats = new int[llista.size()];
-        for (int i = 0; i < numDonats.length;i++) {
-            numDonats[i] = llista.get(i);
+    /**
+     * Solves the problem given by the controller, giving up once the passed token expires.
+     * @param problem Problem given by the controller
+     * @param token Token that stops the search
+     * @return The solved map, or the reason why there is none
+     */
+    @Override
+    public SolveResult solve(Problem problem, SolveToken token) {
+        long start = System.nanoTime();
+        graph = CellGraph.compile(problem);
+        this.token = token;
+        stopped = false;
+        counter = new SolverStats.Counter();
+        values = parallelism > 1 ? solveParallel() : solveSequential();
+        finishStats(problem, start);
+        if (values != null) {
+            return new SolveResult(SolveResult.Status.SOLVED, printProblem(), stats);
         }
-        if(!solver(inici,1,0)){
-            return null;
+        if (stopped) {
+            SolveResult.Status status = token.isCancelled() ? SolveResult.Status.CANCELLED : SolveResult.Status.TIMED_OUT;
+            return new SolveResult(status, null, stats);
         }
-        return printProblem();
+        return new SolveResult(SolveResult.Status.NO_SOLUTION, null, stats);
+    }
+
+    /**
+     * Counts the solutions of a problem, stopping as soon as the passed number of solutions has been found. A limit
+     * of 2 is enough to know whether the solution of a problem is unique. If a solution was found,
+     * {@link #printProblem()} returns it afterwards.
+     * @param problem Problem given by the controller
+     * @param limit Number of solutions after which the search stops, at least 1
+     * @return The number of solutions found, at most limit
+     */
+    @Override
+    public int countSolutions(Problem problem, int limit) {
+        return countSolutions(problem, limit, new SolveToken());
+    }
+
+    /**
+     * Counts the solutions of a problem like {@link #countSolutions(Problem, int)}, giving up once the passed token
+     * expires
+     * @param problem Problem given by the controller
+     * @param limit Number of solutions after which the search stops, at least 1
+     * @param token Token that stops the search
+     * @return The number of solutions found, at most limit, or -1 if the token expired before the count was complete
+     */
+    @Override
+    public int countSolutions(Problem problem, int limit, SolveToken token) {
+        if (limit < 1) throw new IllegalArgumentException("Limit must be at least 1");
+        long start = System.nanoTime();
+        graph = CellGraph.compile(problem);
+        this.token = token;
+        stopped = false;
+        values = null;
+        counter = new SolverStats.Counter();
+        int count;
+        if (parallelism > 1) count = countParallel(limit);
+        else count = countSequential(limit);
+        finishStats(problem, start);
+        return stopped ? -1 : count;
     }
 
     /**
-     * Prints the actual situation of the matrixProblem
+     * Prints the actual situation of the values of the cells
+     * @return The map with the current number of every cell
      */
+    @Override
     public String[][] printProblem() {
-        String[][] map;
-        if (type.equals("S")) {
-            map  = new String[matrixProblem.length-2][matrixProblem[0].length-2];
-            for (int i = 1; i < matrixProblem.length - 1; i++) {
-                if (matrixProblem[i][1] == -1) {
-                    map[i-1][1] = "#";
-                } else if (matrixProblem[i][1] == -2) {
-                    map[i-1][1] = "*";
-                }
-                for (int j = 1; j < matrixProblem[1].length - 1; j++) {
-                    map[i-1][j-1] = fillMatrix(matrixProblem[i][j]);
-                }
+        return graph.toMap(values);
+    }
+
+    /**
+     * Getter function for the statistics
+     * @return The statistics of the last search, or null if there was none
+     */
+    public SolverStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Builds the statistics of the search that just ended and adds them to the {@link SolverMetrics}
+     * @param problem The problem that was searched
+     * @param start Moment when the search started, in the time base of {@link System#nanoTime()}
+     */
+    private void finishStats(Problem problem, long start) {
+        stats = new SolverStats(counter, System.nanoTime() - start);
+        if (recordMetrics) SolverMetrics.getSolverMetrics().record(problem, stats, stopped);
+    }
+
+    /**
+     * Sets whether the statistics of every search are added to the {@link SolverMetrics}. A caller that runs searches
+     * which may be cancelled, like the {@link PortfolioSolver}, turns it off and records the searches it keeps.
+     * @param record false to keep the searches out of the metrics
+     */
+    void setRecordMetrics(boolean record) {
+        recordMetrics = record;
+    }
+
+    /**
+     * Getter function for the parallelism
+     * @return The number of threads used to search
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Searches the compiled graph in the current thread
+     * @return The values of the solution, or null if there is none
+     */
+    private int[] solveSequential() {
+        PathSearch search = new PathSearch(graph);
+        search.setStop(token::isExpired);
+        boolean solved = search.solve();
+        counter.add(search.getCounter());
+        if (solved) return search.getValues();
+        if (search.isStopped()) stopped = true;
+        return null;
+    }
+
+    /**
+     * Splits the search tree into subtrees and searches them in a {@link ForkJoinPool}
+     * @return The values of the solution found first in search order, or null if there is none
+     */
+    private int[] solveParallel() {
+        List<int[]> prefixes = split();
+        if (prefixes == null) return null;
+        if (prefixes.size() <= 1) return solveSequential();
+
+        int[][] solutions = new int[prefixes.size()][];
+        AtomicInteger first = new AtomicInteger(Integer.MAX_VALUE);
+        SubtreeTask task = new SubtreeTask(graph, token, counter, prefixes, solutions, first, null, 0);
+        pool().invoke(task);
+        if (task.isStopped()) stopped = true;
+        int winner = first.get();
+        return winner == Integer.MAX_VALUE ? null : solutions[winner];
+    }
+
+    /**
+     * Counts the solutions of the compiled graph in the current thread
+     * @param limit Number of solutions after which the search stops
+     * @return The number of solutions found, at most limit
+     */
+    private int countSequential(int limit) {
+        PathSearch search = new PathSearch(graph);
+        search.setStop(token::isExpired);
+        int count = search.count(limit);
+        values = search.getFirstSolution();
+        counter.add(search.getCounter());
+        if (search.isStopped()) stopped = true;
+        return count;
+    }
+
+    /**
+     * Splits the search tree into subtrees and counts their solutions in a {@link ForkJoinPool}
+     * @param limit Number of solutions after which the search stops
+     * @return The number of solutions found, at most limit
+     */
+    private int countParallel(int limit) {
+        List<int[]> prefixes = split();
+        if (prefixes == null) return 0;
+        if (prefixes.size() <= 1) return countSequential(limit);
+        int[][] solutions = new int[prefixes.size()][];
+        AtomicInteger total = new AtomicInteger();
+        SubtreeTask task = new SubtreeTask(graph, token, counter, prefixes, solutions, null, total, limit);
+        pool().invoke(task);
+        if (task.isStopped()) stopped = true;
+        for (int[] solution : solutions) {
+            if (solution != null) {
+                values = solution;
+                break;
             }
         }
-        else {
-            map  = new String[matrixProblem.length-4][matrixProblem[0].length-4];
-            for (int i = 2; i < matrixProblem.length - 2; i++) {
-                if (matrixProblem[i][2] == -1) {
-                    map[i-2][0] = "#";
-                } else if (matrixProblem[i][2] == -2) {
-                    map[i-2][0] = "*";
-                } else
-                    map[i-2][0] = String.valueOf(matrixProblem[i][2]);
-                for (int j = 2; j < matrixProblem[2].length - 2; j++) {
-                    map[i-2][j-2] = fillMatrix(matrixProblem[i][j]);
-                }
+        return Math.min(total.get(), limit);
+    }
+
+    /**
+     * Enumerates the beginnings of the paths until there are enough subtrees for all the threads
+     * @return The beginnings of the paths in search order, or null if the token expired
+     */
+    private List<int[]> split() {
+        List<int[]> prefixes = null;
+        for (int length = 2; length <= MAX_SPLIT_DEPTH; length++) {
+            PathSearch search = new PathSearch(graph);
+            search.setStop(token::isExpired);
+            prefixes = search.prefixes(length);
+            counter.add(search.getCounter());
+            if (search.isStopped()) {
+                stopped = true;
+                return null;
             }
+            if (prefixes.size() >= parallelism * TASKS_PER_THREAD) break;
         }
-        return map;
+        return prefixes;
     }
 
-    private String fillMatrix(int i) {
-        String s;
-        if (i == -1) {
-           s = "#";
-        } else if (i == -2) {
-            s = "*";
-        } else
-            s = "" + i;
-        return s;
+    /**
+     * Returns the pool shared by all the solvers with this parallelism
+     * @return A {@link ForkJoinPool} with {@link #parallelism} threads
+     */
+    private ForkJoinPool pool() {
+        return pools.computeIfAbsent(parallelism, ForkJoinPool::new);
     }
 
     /**
-     * Solver function for the problem.
-     * It will analize and treat the one of the possible solutions that the Problem problem could have.
-     * @param a Actual position of the matrixProblem that will be treat.
-     * @param n Next number will be added to the matrixProblem to solve it.
-     * @param seg Next position in the arrayLIst numsDonats to know if the number we need to add is already given by the problem
-     * @return True if the problem has a solution. Otherwise, false.
+     * Task searching a range of subtrees. Ranges are split in halves until a single subtree is left. The task either
+     * looks for the first solution in search order or counts solutions up to a limit. The tasks of a search share
+     * everything but their range, and they do not touch the solver, which reads the outcome once the search is over.
      */
-    private boolean solver (Tuple a, int n, int seg) {
-        int rw,cl;
-        rw = a.getX();
-        cl = a.getY();
-        if (n > numDonats[numDonats.length-1])
-            return true;
-        if (matrixProblem[rw][cl] != 0 && matrixProblem[rw][cl] != n)
-            return  false;
-        if (matrixProblem[rw][cl] == 0 && numDonats[seg] == n)
+    private static final class SubtreeTask extends RecursiveAction {
+        /**
+         * Version of the serialized form of the task
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Graph of the problem being solved
+         */
+        private final CellGraph graph;
+
+        /**
+         * Token that stops the search
+         */
+        private final SolveToken token;
+
+        /**
+         * Counter the statistics of the searches of the subtrees are added to
+         */
+        private final SolverStats.Counter counter;
+
+        /**
+         * Whether the search was stopped by the token, shared by all tasks
+         */
+        private final AtomicBoolean stopped;
+
+        /**
+         * Beginnings of the paths of all the subtrees, in search order
+         */
+        private final List<int[]> prefixes;
+
+        /**
+         * First subtree of the range
+         */
+        private final int from;
+
+        /**
+         * Subtree after the last one of the range
+         */
+        private final int to;
+
+        /**
+         * First solution found in every subtree
+         */
+        private final int[][] solutions;
+
+        /**
+         * Lowest index of a subtree where a solution was found, shared by all tasks. Null when counting.
+         */
+        private final AtomicInteger first;
+
+        /**
+         * Number of solutions found by all tasks. Null when looking for the first solution.
+         */
+        private final AtomicInteger total;
+
+        /**
+         * Number of solutions after which counting stops
+         */
+        private final int limit;
+
+        /**
+         * Creates a task for all the subtrees
+         * @param graph Graph of the problem being solved
+         * @param token Token that stops the search
+         * @param counter Counter the statistics of the searches are added to
+         * @param prefixes Beginnings of the paths of all the subtrees
+         * @param solutions Where the solutions are stored
+         * @param first Lowest index of a subtree with a solution, or null when counting
+         * @param total Number of solutions found, or null when looking for the first solution
+         * @param limit Number of solutions after which counting stops
+         */
+        SubtreeTask(CellGraph graph, SolveToken token, SolverStats.Counter counter, List<int[]> prefixes,
+                    int[][] solutions, AtomicInteger first, AtomicInteger total, int limit) {
+            this.graph = graph;
+            this.token = token;
+            this.counter = counter;
+            this.stopped = new AtomicBoolean();
+            this.prefixes = prefixes;
+            this.from = 0;
+            this.to = prefixes.size();
+            this.solutions = solutions;
+            this.first = first;
+            this.total = total;
+            this.limit = limit;
+        }
+
+        /**
+         * Creates a task for a part of the range of another task
+         * @param parent The task whose range is split
+         * @param from First subtree of the range
+         * @param to Subtree after the last one of the range
+         */
+        private SubtreeTask(SubtreeTask parent, int from, int to) {
+            this.graph = parent.graph;
+            this.token = parent.token;
+            this.counter = parent.counter;
+            this.stopped = parent.stopped;
+            this.prefixes = parent.prefixes;
+            this.from = from;
+            this.to = to;
+            this.solutions = parent.solutions;
+            this.first = parent.first;
+            this.total = parent.total;
+            this.limit = parent.limit;
+        }
+
+        /**
+         * Returns whether the search was stopped by the token
+         * @return true if some subtree was not searched completely because the token expired
+         */
+        boolean isStopped() {
+            return stopped.get();
+        }
+
+        /**
+         * Returns whether the subtrees of this task do not need to be searched anymore
+         * @return true if a subtree before this range has a solution, enough solutions have been counted or the
+         * token expired
+         */
+        private boolean isSettled() {
+            if (total == null ? first.get() < from : total.get() >= limit) return true;
+            if (token.isExpired()) {
+                stopped.set(true);
+                return true;
+            }
             return false;
-        int anterior = matrixProblem[rw][cl];
-        if (anterior == n)
-            seg++;
-
-        matrixProblem[rw][cl] = n;
-        Tuple tuple;
-        switch (type) {
-            case "S":
-                if(ang.equals("CA")) {
-                    for (int i = -1; i < 2; i++)
-                        for (int j = -1; j < 2; j++) {
-                            tuple = new Tuple(rw + i, cl + j);
-                            if (solver(tuple, n + 1, seg))
-                                return true;
-                        }
-                }
-                else {
-                    tuple = new Tuple(rw-1, cl);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    tuple = new Tuple(rw+1, cl);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    tuple = new Tuple(rw, cl+1);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    tuple = new Tuple(rw, cl-1);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                }
-                break;
-            case "T":
-                if (ang.equals("C")) {
-                    tuple = new Tuple(rw, cl + 1);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    tuple = new Tuple(rw, cl - 1);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    if(rw%2==cl%2) {
-                        tuple = new Tuple(rw+1,cl);
-                        if (solver(tuple, n + 1, seg))
-                            return true;
-                    }
-                    else {
-                        tuple = new Tuple(rw-1,cl);
-                        if (solver(tuple, n + 1, seg))
-                            return true;
-                    }
-                }
-                else {
-                    tuple = new Tuple(rw, cl + 1);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    tuple = new Tuple(rw, cl - 1);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    tuple = new Tuple(rw, cl - 2);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    tuple = new Tuple(rw, cl + 2);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    tuple = new Tuple(rw - 1, cl - 1);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    tuple = new Tuple(rw - 1, cl);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    tuple = new Tuple(rw - 1, cl + 1);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    tuple = new Tuple(rw + 1, cl - 1);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    tuple = new Tuple(rw + 1, cl);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    tuple = new Tuple(rw + 1, cl + 1);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-
-                    if (rw % 2 == cl % 2) {
-                        tuple = new Tuple(rw + 1, cl - 2);
-                        if (solver(tuple, n + 1, seg))
-                            return true;
-                        tuple = new Tuple(rw + 1, cl + 2);
-                        if (solver(tuple, n + 1, seg))
-                            return true;
-                    } else {
-                        tuple = new Tuple(rw - 1, cl - 2);
-                        if (solver(tuple, n + 1, seg))
-                            return true;
-                        tuple = new Tuple(rw - 1, cl + 2);
-                        if (solver(tuple, n + 1, seg))
-                            return true;
-                    }
-                }
-                break;
-            case "H":
-                tuple = new Tuple(rw, cl + 1);
-                if (solver(tuple, n + 1, seg))
-                    return true;
-                tuple = new Tuple(rw, cl - 1);
-                if (solver(tuple, n + 1, seg))
-                    return true;
-                tuple = new Tuple(rw - 1, cl);
-                if (solver(tuple, n + 1, seg))
-                    return true;
-                tuple = new Tuple(rw + 1, cl);
-                if (solver(tuple, n + 1, seg))
-                    return true;
-
-                if (rw%2==1) {
-                    tuple = new Tuple(rw - 1, cl + 1);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    tuple = new Tuple(rw + 1, cl + 1);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                }
-                else {
-                    tuple = new Tuple(rw - 1, cl - 1);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                    tuple = new Tuple(rw + 1, cl - 1);
-                    if (solver(tuple, n + 1, seg))
-                        return true;
-                }
-            default:
-                break;
         }
-        matrixProblem[rw][cl] = anterior;
-        return false;
+
+        /**
+         * Searches the subtree, or splits the range and forks the second half
+         */
+        @Override
+        protected void compute() {
+            if (isSettled()) return;
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                SubtreeTask second = new SubtreeTask(this, middle, to);
+                second.fork();
+                new SubtreeTask(this, from, middle).compute();
+                second.join();
+                return;
+            }
+            PathSearch search = new PathSearch(graph);
+            search.setStop(this::isSettled);
+            if (total != null) {
+                int count = search.countFrom(prefixes.get(from), limit);
+                solutions[from] = search.getFirstSolution();
+                total.addAndGet(count);
+            }
+            else if (search.solveFrom(prefixes.get(from))) {
+                solutions[from] = search.getValues();
+                first.accumulateAndGet(from, Math::min);
+            }
+            synchronized (counter) {
+                counter.add(search.getCounter());
+            }
+        }
     }
 }
-
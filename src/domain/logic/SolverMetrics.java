@@ -0,0 +1,240 @@
+package domain.logic;
+
+import domain.game.Problem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * SolverMetrics adds up the {@link SolverStats} of every search done by the {@link Solver} since the application
+ * started. The searches are added up for all of them together and for every puzzle class, which is the
+ * {@link domain.game.Type} and the {@link domain.game.Difficulty} of the problem (for example "Square/Hard"), so the
+ * classes of problems that are slow to solve can be found.
+ *
+ * The metrics are shared by the whole application and can be used from several threads.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class SolverMetrics {
+
+    /**
+     * Self instance of SolverMetrics
+     */
+    private static SolverMetrics solverMetrics = new SolverMetrics();
+
+    /**
+     * Totals of all the searches
+     */
+    private Summary total = new Summary();
+
+    /**
+     * Totals of the searches of every puzzle class, by the name of the class
+     */
+    private final Map<String, Summary> classes = new TreeMap<>();
+
+    /**
+     * Creator function of the metrics
+     */
+    private SolverMetrics() {
+    }
+
+    /**
+     * Getter function of the metrics instance
+     * @return The metrics shared by the application
+     */
+    public static SolverMetrics getSolverMetrics() {
+        return solverMetrics;
+    }
+
+    /**
+     * Adds a search to the metrics
+     * @param problem The problem that was searched
+     * @param stats The statistics of the search
+     * @param stopped Whether the search was stopped before it could decide
+     */
+    public synchronized void record(Problem problem, SolverStats stats, boolean stopped) {
+        total.add(stats, stopped);
+        classes.computeIfAbsent(classOf(problem), k -> new Summary()).add(stats, stopped);
+    }
+
+    /**
+     * Returns the totals of all the searches
+     * @return A copy of the totals
+     */
+    public synchronized Summary getTotal() {
+        return total.copy();
+    }
+
+    /**
+     * Returns the names of the puzzle classes that have been searched
+     * @return The names of the classes, in alphabetical order
+     */
+    public synchronized List<String> getPuzzleClasses() {
+        return new ArrayList<>(classes.keySet());
+    }
+
+    /**
+     * Returns the totals of the searches of a puzzle class
+     * @param puzzleClass The name of a class, as returned by {@link #getPuzzleClasses()}
+     * @return A copy of the totals, or null if no problem of the class has been searched
+     */
+    public synchronized Summary getSummary(String puzzleClass) {
+        Summary summary = classes.get(puzzleClass);
+        return summary == null ? null : summary.copy();
+    }
+
+    /**
+     * Forgets all the searches
+     */
+    public synchronized void reset() {
+        total = new Summary();
+        classes.clear();
+    }
+
+    /**
+     * Returns the puzzle class of a problem
+     * @param problem A problem
+     * @return The name of its type and its difficulty, separated by "/"
+     */
+    public static String classOf(Problem problem) {
+        return problem.getType() + "/" + problem.getDifficulty();
+    }
+
+    /**
+     * Totals of a group of searches
+     */
+    public static class Summary {
+        /**
+         * Number of searches
+         */
+        private long searches;
+
+        /**
+         * Number of searches stopped before they could decide
+         */
+        private long stopped;
+
+        /**
+         * Sum of the counts of the searches
+         */
+        private final SolverStats.Counter counter = new SolverStats.Counter();
+
+        /**
+         * Sum of the times of the searches, in nanoseconds
+         */
+        private long totalNanos;
+
+        /**
+         * Time of the slowest search, in nanoseconds
+         */
+        private long maxNanos;
+
+        /**
+         * Adds a search to the totals
+         * @param stats The statistics of the search
+         * @param stopped Whether the search was stopped
+         */
+        private void add(SolverStats stats, boolean stopped) {
+            searches++;
+            if (stopped) this.stopped++;
+            counter.nodes += stats.getNodes();
+            counter.backtracks += stats.getBacktracks();
+            for (SolverStats.Prune rule : SolverStats.Prune.values()) {
+                counter.prunes[rule.ordinal()] += stats.getPrunes(rule);
+            }
+            counter.maxDepth = Math.max(counter.maxDepth, stats.getMaxDepth());
+            totalNanos += stats.getElapsedNanos();
+            maxNanos = Math.max(maxNanos, stats.getElapsedNanos());
+        }
+
+        /**
+         * Copies the totals
+         * @return A copy that does not change when more searches are added
+         */
+        private Summary copy() {
+            Summary copy = new Summary();
+            copy.searches = searches;
+            copy.stopped = stopped;
+            copy.counter.add(counter);
+            copy.totalNanos = totalNanos;
+            copy.maxNanos = maxNanos;
+            return copy;
+        }
+
+        /**
+         * Getter function for the searches
+         * @return The number of searches
+         */
+        public long getSearches() {
+            return searches;
+        }
+
+        /**
+         * Getter function for the stopped searches
+         * @return The number of searches stopped before they could decide
+         */
+        public long getStopped() {
+            return stopped;
+        }
+
+        /**
+         * Getter function for the nodes
+         * @return The number of numbers placed by all the searches
+         */
+        public long getNodes() {
+            return counter.nodes;
+        }
+
+        /**
+         * Getter function for the backtracks
+         * @return The number of times all the searches went back to a previous number
+         */
+        public long getBacktracks() {
+            return counter.backtracks;
+        }
+
+        /**
+         * Returns how many branches a rule cut in all the searches
+         * @param rule A pruning rule
+         * @return The number of branches cut by the rule
+         */
+        public long getPrunes(SolverStats.Prune rule) {
+            return counter.prunes[rule.ordinal()];
+        }
+
+        /**
+         * Getter function for the maximum depth
+         * @return The highest number placed by any search
+         */
+        public int getMaxDepth() {
+            return counter.maxDepth;
+        }
+
+        /**
+         * Getter function for the total time
+         * @return The sum of the times of the searches, in nanoseconds
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * Getter function for the maximum time
+         * @return The time of the slowest search, in nanoseconds
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * Returns the mean time of a search
+         * @return The mean time in nanoseconds, 0 if there were no searches
+         */
+        public long getMeanNanos() {
+            return searches == 0 ? 0 : totalNanos / searches;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package domain.logic;
+
+/**
+ * SolverStats tells how hard a search was: how many numbers were placed, how many times the search went back, how
+ * many branches every pruning rule cut, how deep the path got and how long it took. The {@link Solver} returns them
+ * with every {@link SolveResult} and adds them to the {@link SolverMetrics} of the application.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class SolverStats {
+
+    /**
+     * Rules with which the search cuts a branch
+     */
+    public enum Prune {
+        /**
+         * The next given number can not be reached in time from a cell
+         */
+        DISTANCE,
+        /**
+         * An open cell is left with too few open neighbours to be part of the path
+         */
+        DEAD_END,
+        /**
+         * Some cells that have to be covered are no longer connected to the end of the path
+         */
+        CONNECTIVITY,
+        /**
+         * Two cells have to hold the next number, or a cell has to hold a number it can not hold
+         */
+        FORCED
+    }
+
+    /**
+     * Numbers placed by the search
+     */
+    private final long nodes;
+
+    /**
+     * Times the search went back to a previous number
+     */
+    private final long backtracks;
+
+    /**
+     * Branches cut by every rule, indexed by {@link Prune#ordinal()}
+     */
+    private final long[] prunes;
+
+    /**
+     * Highest number placed by the search
+     */
+    private final int maxDepth;
+
+    /**
+     * Time the search took, in nanoseconds
+     */
+    private final long elapsedNanos;
+
+    /**
+     * Creates the statistics of a search
+     * @param counter The counts of the search
+     * @param elapsedNanos Time the search took, in nanoseconds
+     */
+    SolverStats(Counter counter, long elapsedNanos) {
+        this.nodes = counter.nodes;
+        this.backtracks = counter.backtracks;
+        this.prunes = counter.prunes.clone();
+        this.maxDepth = counter.maxDepth;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Getter function for the nodes
+     * @return The number of numbers placed by the search
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Getter function for the backtracks
+     * @return The number of times the search went back to a previous number
+     */
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    /**
+     * Returns how many branches a rule cut
+     * @param rule A pruning rule
+     * @return The number of branches cut by the rule
+     */
+    public long getPrunes(Prune rule) {
+        return prunes[rule.ordinal()];
+    }
+
+    /**
+     * Getter function for the maximum depth
+     * @return The highest number placed by the search
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Getter function for the elapsed time
+     * @return The time the search took, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Counts of a search while it runs. Every {@link PathSearch} has its own counter, the counters of a parallel
+     * search are added up when it ends.
+     */
+    static class Counter {
+        /**
+         * Numbers placed
+         */
+        long nodes;
+
+        /**
+         * Times the search went back
+         */
+        long backtracks;
+
+        /**
+         * Branches cut by every rule, indexed by {@link Prune#ordinal()}
+         */
+        final long[] prunes = new long[Prune.values().length];
+
+        /**
+         * Highest number placed
+         */
+        int maxDepth;
+
+        /**
+         * Counts a branch cut by a rule
+         * @param rule The rule that cut the branch
+         */
+        void prune(Prune rule) {
+            prunes[rule.ordinal()]++;
+        }
+
+        /**
+         * Adds the counts of another counter to this one
+         * @param other A counter
+         */
+        void add(Counter other) {
+            nodes += other.nodes;
+            backtracks += other.backtracks;
+            for (int i = 0; i < prunes.length; i++) prunes[i] += other.prunes[i];
+            maxDepth = Math.max(maxDepth, other.maxDepth);
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package domain.logic;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * WarnsdorffWalk builds a path that covers almost all the free cells of a board. The path starts at a free cell
+ * with the fewest free neighbours and always moves to the free neighbour that has the fewest free neighbours
+ * itself (Warnsdorff's rule), so cells that are hard to reach are taken before they are cut off:
+ * - a move that splits the free cells in two groups is only made if every move does,
+ * - a neighbour without free neighbours ends the path, so it is only chosen if there is no other one,
+ * - ties are broken by the free neighbours of the free neighbours, and then at random.
+ *
+ * When the path gets stuck before covering the board it is repaired instead of walked again:
+ * - if its first cell still has free neighbours the path is reversed and continues from it,
+ * - otherwise steps of the path that run along free cells are replaced by detours through up to
+ *   {@link #MAX_DETOUR} of them, which lets the path take the free cells that it walled off,
+ * - otherwise a neighbour of its last cell that lies inside the path is linked to the last cell and the part of the
+ *   path after that neighbour is reversed (a rotation), which gives the path a new last cell to continue from.
+ *   Rotations whose new last cell has a free neighbour are preferred, and if the last cell can not be rotated the
+ *   path is reversed to rotate its first cell.
+ * The walk stops when neither end can be rotated or after {@link #ROTATIONS_PER_CELL} rotations per free cell.
+ *
+ * The walk is iterative and works on the {@link CellGraph} of the board, so the size of the board is not limited by
+ * the thread stack. Only the biggest group of connected free cells is walked. It is the
+ * {@link Generator.FillEngine#WARNSDORFF} engine of the {@link Generator}.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+class WarnsdorffWalk {
+    /**
+     * Number of rotations per free cell allowed to the walk
+     */
+    private static final int ROTATIONS_PER_CELL = 8;
+
+    /**
+     * Value of {@link #position} for the free cells
+     */
+    private static final int FREE = -1;
+
+    /**
+     * Maximum number of free cells a detour goes through. Four are enough to go around a hexagon of the triangle
+     * grid without corner adjacency, which has no shorter cycles.
+     */
+    private static final int MAX_DETOUR = 4;
+
+    /**
+     * Graph of the board
+     */
+    private final CellGraph graph;
+
+    /**
+     * Start of the neighbours of every cell in {@link #neighbours}, taken from {@link CellGraph#offsets}
+     */
+    private final int[] offsets;
+
+    /**
+     * Neighbours of all the cells, one after another, taken from {@link CellGraph#neighbours}
+     */
+    private final int[] neighbours;
+
+    /**
+     * Random generator that breaks the ties
+     */
+    private final Random rand;
+
+    /**
+     * Position of every cell in the path, {@link #FREE} for the free cells and the number of cells for the cells
+     * that can not be used
+     */
+    private final int[] position;
+
+    /**
+     * Number of free neighbours of every cell
+     */
+    private final int[] degree;
+
+    /**
+     * Cells of the path
+     */
+    private int[] path;
+
+    /**
+     * Number of cells of the path
+     */
+    private int length;
+
+    /**
+     * Buffer in which the path is rebuilt by {@link #insertDetours()}
+     */
+    private int[] buffer;
+
+    /**
+     * Cells of the detour being built by {@link #findDetour(int, int, int)}
+     */
+    private final int[] detour = new int[MAX_DETOUR];
+
+    /**
+     * Number of free cells
+     */
+    private int free;
+
+    /**
+     * Flood fill marks, a cell is marked if its mark equals {@link #stamp}
+     */
+    private final int[] mark;
+
+    /**
+     * Mark of the current flood fill, increased before every fill so the old marks do not have to be cleared
+     */
+    private int stamp;
+
+    /**
+     * Cells waiting to be visited by a flood fill
+     */
+    private final int[] queue;
+
+    /**
+     * Constructs a walk over the free cells of a graph
+     * @param graph the graph of the board
+     * @param rand the random generator
+     */
+    WarnsdorffWalk(CellGraph graph, Random rand) {
+        this.graph = graph;
+        this.offsets = graph.offsets;
+        this.neighbours = graph.neighbours;
+        this.rand = rand;
+        int size = graph.size();
+        position = new int[size];
+        degree = new int[size];
+        mark = new int[size];
+        queue = new int[size];
+        for (int i = 0; i < size; i++) position[i] = graph.values[i] == CellGraph.FREE ? FREE : size;
+        keepLargestRegion();
+        for (int i = 0; i < size; i++) {
+            if (position[i] != FREE) continue;
+            free++;
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                if (position[neighbours[k]] == FREE) degree[i]++;
+            }
+        }
+        leaveOutExtraEnds();
+        path = new int[free];
+        buffer = new int[free];
+    }
+
+    /**
+     * Builds the path
+     * @return the cells of the path, in order
+     */
+    int[] build() {
+        int cell = start();
+        if (cell < 0) return new int[0];
+        long rotations = (long) ROTATIONS_PER_CELL * free;
+        int detoured = 0;
+        int[] candidates = new int[maxDegree()];
+        boolean flipped = false;
+        int pivot = -1;
+        while (true) {
+            while (cell >= 0) {
+                append(cell);
+                cell = move(cell);
+            }
+            if (free == 0) break;
+            if (degree[path[0]] > 0) {
+                reverse(0, length - 1);
+                cell = move(path[length - 1]);
+                continue;
+            }
+            if (length > detoured && insertDetours() > 0) {
+                cell = move(path[length - 1]);
+                continue;
+            }
+            detoured = length;
+            if (rotations-- <= 0) break;
+
+            int last = path[length - 1];
+            int count = 0;
+            int open = 0;
+            for (int k = offsets[last]; k < offsets[last + 1]; k++) {
+                int q = neighbours[k];
+                if (position[q] < 0 || position[q] >= length - 2 || q == pivot) continue;
+                if (degree[path[position[q] + 1]] > 0) {
+                    candidates[count++] = candidates[open];
+                    candidates[open++] = q;
+                }
+                else candidates[count++] = q;
+            }
+            if (count == 0 && !flipped) {
+                pivot = -1;
+                reverse(0, length - 1);
+                flipped = true;
+                continue;
+            }
+            if (count == 0) break;
+            flipped = false;
+            int q = candidates[rand.nextInt(open > 0 ? open : count)];
+            pivot = q;
+            reverse(position[q] + 1, length - 1);
+            cell = move(path[length - 1]);
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    /**
+     * Replaces steps a -> b of the path by detours a -> f1 -> ... -> fk -> b through up to {@link #MAX_DETOUR}
+     * free cells, which lets the path take the free cells along its sides
+     * @return the number of cells added to the path
+     */
+    private int insertDetours() {
+        int added = 0;
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            buffer[size++] = path[i];
+            if (i + 1 == length) break;
+            int cells = findDetour(path[i], path[i + 1], 0);
+            for (int k = 0; k < cells; k++) {
+                take(detour[k]);
+                buffer[size++] = detour[k];
+            }
+            added += cells;
+        }
+        int[] swap = path;
+        path = buffer;
+        buffer = swap;
+        length = size;
+        for (int i = 0; i < length; i++) position[path[i]] = i;
+        return added;
+    }
+
+    /**
+     * Looks for free cells that join a cell to the next cell of the path, storing them in {@link #detour}
+     * @param from the last cell of the detour so far
+     * @param to the cell the detour has to reach
+     * @param depth the number of cells of the detour so far
+     * @return the number of cells of the detour found, 0 if there is none
+     */
+    private int findDetour(int from, int to, int depth) {
+        if (depth == MAX_DETOUR) return 0;
+        for (int k = offsets[from]; k < offsets[from + 1]; k++) {
+            int f = neighbours[k];
+            if (position[f] != FREE || isInDetour(f, depth)) continue;
+            detour[depth] = f;
+            if (graph.areNeighbours(f, to)) return depth + 1;
+            int cells = findDetour(f, to, depth + 1);
+            if (cells > 0) return cells;
+        }
+        return 0;
+    }
+
+    /**
+     * Checks whether a cell is already part of the detour being built
+     * @param cell the cell
+     * @param depth the number of cells of the detour so far
+     * @return true if it is one of them
+     */
+    private boolean isInDetour(int cell, int depth) {
+        for (int k = 0; k < depth; k++) {
+            if (detour[k] == cell) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Takes a free cell for the path, without placing it
+     * @param cell the cell
+     */
+    private void take(int cell) {
+        position[cell] = 0;
+        free--;
+        for (int k = offsets[cell]; k < offsets[cell + 1]; k++) degree[neighbours[k]]--;
+    }
+
+    /**
+     * Chooses the first cell of the path
+     * @return a free cell with the fewest free neighbours, chosen at random among ties, or -1 if there is none
+     */
+    private int start() {
+        int start = -1;
+        int ties = 0;
+        for (int i = 0; i < position.length; i++) {
+            if (position[i] != FREE) continue;
+            if (start < 0 || degree[i] < degree[start]) {
+                start = i;
+                ties = 1;
+            }
+            else if (degree[i] == degree[start] && rand.nextInt(++ties) == 0) start = i;
+        }
+        return start;
+    }
+
+    /**
+     * Adds a free cell at the end of the path
+     * @param cell the cell
+     */
+    private void append(int cell) {
+        position[cell] = length;
+        path[length++] = cell;
+        free--;
+        for (int k = offsets[cell]; k < offsets[cell + 1]; k++) degree[neighbours[k]]--;
+    }
+
+    /**
+     * Chooses the next cell of the path
+     * @param cell the last cell of the path
+     * @return the free neighbour chosen by Warnsdorff's rule, or -1 if there is none
+     */
+    private int move(int cell) {
+        int best = -1;
+        long bestKey = Long.MAX_VALUE;
+        int ties = 0;
+        for (int k = offsets[cell]; k < offsets[cell + 1]; k++) {
+            int x = neighbours[k];
+            if (position[x] != FREE) continue;
+            int second = 0;
+            for (int j = offsets[x]; j < offsets[x + 1]; j++) {
+                if (position[neighbours[j]] == FREE) second += degree[neighbours[j]];
+            }
+            long key = ((long) (degree[x] == 0 ? Integer.MAX_VALUE : degree[x]) << 32) | second;
+            if (splits(x)) key |= 1L << 62;
+            if (key < bestKey) {
+                best = x;
+                bestKey = key;
+                ties = 1;
+            }
+            else if (key == bestKey && rand.nextInt(++ties) == 0) best = x;
+        }
+        return best;
+    }
+
+    /**
+     * Checks whether taking a free cell would split the other free cells in several groups
+     * @param cell a free cell
+     * @return true if some free cells would no longer be connected to the free neighbours of the cell
+     */
+    private boolean splits(int cell) {
+        int first = -1;
+        for (int k = offsets[cell]; k < offsets[cell + 1] && first < 0; k++) {
+            if (position[neighbours[k]] == FREE) first = neighbours[k];
+        }
+        if (first < 0) return free > 1;
+        if (aroundIsConnected(cell)) return false;
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            stamp = 1;
+        }
+        mark[cell] = stamp;
+        mark[first] = stamp;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = first;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                int v = neighbours[k];
+                if (position[v] == FREE && mark[v] != stamp) {
+                    mark[v] = stamp;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return tail != free - 1;
+    }
+
+    /**
+     * Checks whether the free neighbours of a cell are connected among themselves without going through it, in
+     * which case taking the cell can not split the free cells
+     * @param cell a free cell with at least one free neighbour
+     * @return true if the free neighbours of the cell form a single group
+     */
+    private boolean aroundIsConnected(int cell) {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            stamp = 1;
+        }
+        int around = 0;
+        int first = -1;
+        for (int k = offsets[cell]; k < offsets[cell + 1]; k++) {
+            int x = neighbours[k];
+            if (position[x] != FREE) continue;
+            around++;
+            if (first < 0) first = x;
+        }
+        int head = 0;
+        int tail = 0;
+        mark[first] = stamp;
+        queue[tail++] = first;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int k = offsets[cell]; k < offsets[cell + 1]; k++) {
+                int v = neighbours[k];
+                if (position[v] == FREE && mark[v] != stamp && graph.areNeighbours(u, v)) {
+                    mark[v] = stamp;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return tail == around;
+    }
+
+    /**
+     * Reverses a part of the path
+     * @param from the first position of the part
+     * @param to the last position of the part
+     */
+    private void reverse(int from, int to) {
+        while (from < to) {
+            int swap = path[from];
+            path[from] = path[to];
+            path[to] = swap;
+            position[path[from]] = from;
+            position[path[to]] = to;
+            from++;
+            to--;
+        }
+    }
+
+    /**
+     * Leaves only the biggest group of connected free cells free, the other free cells can not be used
+     */
+    private void keepLargestRegion() {
+        int size = position.length;
+        int[] region = new int[size];
+        int regions = 0;
+        int largest = 0;
+        int largestSize = 0;
+        for (int i = 0; i < size; i++) {
+            if (position[i] != FREE || region[i] != 0) continue;
+            regions++;
+            int head = 0;
+            int tail = 0;
+            region[i] = regions;
+            queue[tail++] = i;
+            while (head < tail) {
+                int u = queue[head++];
+                for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                    int v = neighbours[k];
+                    if (position[v] == FREE && region[v] == 0) {
+                        region[v] = regions;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+            if (tail > largestSize) {
+                largestSize = tail;
+                largest = regions;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (position[i] == FREE && region[i] != largest) position[i] = size;
+        }
+    }
+
+    /**
+     * A free cell with a single free neighbour can only be an end of the path, so if there are more than two of
+     * them the others are left out. Leaving a cell out can leave another one with a single free neighbour, so this
+     * is repeated until at most two are left.
+     */
+    private void leaveOutExtraEnds() {
+        int size = position.length;
+        int ends = 0;
+        for (int i = 0; i < size; i++) {
+            if (position[i] == FREE && degree[i] <= 1) ends++;
+        }
+        for (int i = 0; i < size && ends > 2; i++) {
+            if (position[i] != FREE || degree[i] > 1) continue;
+            int cell = i;
+            while (cell >= 0 && ends > 2) {
+                position[cell] = size;
+                free--;
+                ends--;
+                int next = -1;
+                for (int k = offsets[cell]; k < offsets[cell + 1]; k++) {
+                    int x = neighbours[k];
+                    if (position[x] != FREE) continue;
+                    if (--degree[x] == 1) {
+                        ends++;
+                        next = x;
+                    }
+                }
+                cell = next;
+            }
+        }
+    }
+
+    /**
+     * Returns the highest number of neighbours of a cell
+     * @return the highest degree of the graph
+     */
+    private int maxDegree() {
+        int max = 1;
+        for (int i = 0; i < position.length; i++) max = Math.max(max, offsets[i + 1] - offsets[i]);
+        return max;
+    }
+}
@@ -488,8 +488,9 @@ public class CtrlPresentation extends Application {
      * @param map the personalized map to be used in the generation of the problem's map
      * @return displayable problem info
      * @throws IOException could not write in Problem file
+     * @throws CtrlDomain.SolverTimeoutException the solver could not decide in time whether the map has a solution
      */
-    public String[] generatePersonalizedProblem(String type, boolean adjacency, String difficulty, int rows, int columns, String[][] map) throws IOException {
+    public String[] generatePersonalizedProblem(String type, boolean adjacency, String difficulty, int rows, int columns, String[][] map) throws IOException, CtrlDomain.SolverTimeoutException {
         return ctrlDomain.generatePersonalizedProblem(type,rows,columns,difficulty,adjacency,map);
     }
 
@@ -510,9 +511,10 @@ public class CtrlPresentation extends Application {
      * @throws FileNotFoundException    Thrown when the passed path does not link to a file.
      * @throws IOException              Can be thrown by {@link CtrlDomain#loadProblemFromPath(String)}
      * @throws ParseException           The file does not fulfil the format requirements.
+     * @throws CtrlDomain.SolverTimeoutException The solver could not check the problem in time.
      * @see CtrlDomain#loadProblemFromPath(String)
      */
-    public String[] loadProblemFromPath(String path) throws IOException, ParseException, CtrlDomain.ProblemExistsException, CtrlDomain.ProblemNotValidException {
+    public String[] loadProblemFromPath(String path) throws IOException, ParseException, CtrlDomain.ProblemExistsException, CtrlDomain.ProblemNotValidException, CtrlDomain.SolverTimeoutException {
         return ctrlDomain.loadProblemFromPath(path);
     }
 
@@ -549,8 +551,9 @@ public class CtrlPresentation extends Application {
      * @param type the type attribute of the problem being solved
      * @param lastNumber the last number added to the solution by the player
      * @return The x and y position of the following number of a solution if solvable, empty string otherwise
+     * @throws CtrlDomain.SolverTimeoutException The solver could not decide in time whether the solution is solvable
      */
-    public String[] getHint(String[][] solution, String adjacency, int columns, int rows, String type, int lastNumber) {
+    public String[] getHint(String[][] solution, String adjacency, int columns, int rows, String type, int lastNumber) throws CtrlDomain.SolverTimeoutException {
         return ctrlDomain.getHint(solution, adjacency, columns,rows,type,lastNumber);
     }
 
@@ -630,8 +633,9 @@ public class CtrlPresentation extends Application {
      * @param rows number of rows of the problem's map
      * @param type the type of the problem
      * @return the solution of the started attempt
+     * @throws CtrlDomain.SolverTimeoutException The solver could not decide in time whether the attempt is solvable
      */
-    public String[][] getSolution(String[][] solution, String adjacency, int columns, int rows, String type) {
+    public String[][] getSolution(String[][] solution, String adjacency, int columns, int rows, String type) throws CtrlDomain.SolverTimeoutException {
         return ctrlDomain.getSolution(solution, adjacency, columns, rows, type);
     }
 }
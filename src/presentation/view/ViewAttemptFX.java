@@ -1,6 +1,7 @@
 package presentation.view;
 
 import data.CtrlGenericData;
+import domain.controllers.CtrlDomain;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
@@ -600,7 +601,13 @@ public class ViewAttemptFX extends GenericViewFX {
      */
     @FXML
     private void onSolveButtonClick(){
-        String [][] s  = ctrlPresentation.getSolution(solution, adjacency, columns, rows, type);
+        String [][] s;
+        try {
+            s  = ctrlPresentation.getSolution(solution, adjacency, columns, rows, type);
+        } catch (CtrlDomain.SolverTimeoutException e) {
+            solverTimeout();
+            return;
+        }
         if(s.length > 0 && s[0].length > 0){
             for (int i = 0; i < rows; i++) {
                 for (int j = 0; j < columns; j++) {
@@ -638,7 +645,12 @@ public class ViewAttemptFX extends GenericViewFX {
             alert.setContentText("Would you want to see a solution of the problem?");
             Optional<ButtonType> result = alert.showAndWait();
             if ((result.isPresent()) && (result.get() == ButtonType.OK)) {
-                s  = ctrlPresentation.getSolution(map, adjacency, columns, rows, type);
+                try {
+                    s  = ctrlPresentation.getSolution(map, adjacency, columns, rows, type);
+                } catch (CtrlDomain.SolverTimeoutException e) {
+                    solverTimeout();
+                    return;
+                }
                 if(s.length > 0){
                     for (int i = 0; i < rows; i++) {
                         for (int j = 0; j < columns; j++) {
@@ -772,7 +784,13 @@ public class ViewAttemptFX extends GenericViewFX {
     @FXML
     private void onHintButtonClick(){
         penalize();
-        String [] s  = ctrlPresentation.getHint(solution, adjacency, columns, rows, type, lastNumber);
+        String [] s;
+        try {
+            s  = ctrlPresentation.getHint(solution, adjacency, columns, rows, type, lastNumber);
+        } catch (CtrlDomain.SolverTimeoutException e) {
+            solverTimeout();
+            return;
+        }
         if(s.length > 0){
             int x = Integer.parseInt(s[0]);
             int y = Integer.parseInt(s[1]);
@@ -804,6 +822,17 @@ public class ViewAttemptFX extends GenericViewFX {
         alert.showAndWait();
     }
 
+    /**
+     * Alert displaying that the solver gave up before finding out whether the current solution is solvable
+     */
+    private void solverTimeout() {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setHeaderText(null);
+        alert.setTitle("Solver timed out");
+        alert.setContentText("The solver could not finish in time, try again after placing a few more numbers.");
+        alert.showAndWait();
+    }
+
     /**
      * TODO
      * @param gridPane
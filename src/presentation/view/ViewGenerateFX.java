@@ -1,5 +1,6 @@
 package presentation.view;
 
+import domain.controllers.CtrlDomain;
 import javafx.application.Platform;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.ObservableList;
@@ -583,6 +584,8 @@ public class ViewGenerateFX extends GenericViewFX {
                     }
                 } catch (IOException e) {
                     showFileWriteErrorAlert(e);
+                } catch (CtrlDomain.SolverTimeoutException e) {
+                    solverTimeoutAlert();
                 }
             }
             else {
@@ -609,6 +612,17 @@ public class ViewGenerateFX extends GenericViewFX {
         alert.showAndWait();
     }
 
+    /**
+     * Alert for a personalized hidato the solver could not finish in time
+     */
+    private void solverTimeoutAlert() {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setHeaderText(null);
+        alert.setTitle("Solver timed out");
+        alert.setContentText("The solver could not finish in time, try again after placing a few more numbers.");
+        alert.showAndWait();
+    }
+
     /**
      * Alert displayed when trying to add a number which will make
      * the hidato impossible to generate
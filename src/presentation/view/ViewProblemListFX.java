@@ -450,7 +450,9 @@ public class ViewProblemListFX extends GenericViewFX {
                 } catch (CtrlDomain.ProblemExistsException e) {
                     showAlert(Alert.AlertType.ERROR,"Already loaded","Your Hidato is already in the list of games","Please select a new Hidato.");
                 } catch (CtrlDomain.ProblemNotValidException e) {
-                    showAlert(Alert.AlertType.ERROR,"Problem not valid","Your Hidato does not have a solution","Please select a valid Hidato.");
+                    showAlert(Alert.AlertType.ERROR,"Problem not valid","Your Hidato does not have a unique solution","Please select a valid Hidato.");
+                } catch (CtrlDomain.SolverTimeoutException e) {
+                    showAlert(Alert.AlertType.ERROR,"Solver timed out","The solver could not check your Hidato in time","Try again with a Hidato with more numbers.");
                 }
             }
             else {
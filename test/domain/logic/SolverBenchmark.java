@@ -0,0 +1,112 @@
+package domain.logic;
+
+import domain.game.Difficulty;
+import domain.game.Problem;
+import domain.game.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * SolverBenchmark times every {@link HidatoSolver} backend on problems made by the {@link Generator}, for every type
+ * of board with and without corner adjacency (hexagons only have one adjacency). The problems are generated with
+ * fixed seeds, so every run solves the same boards.
+ *
+ * Run it from the root of the project with:
+ *
+ *   javac -d out $(find src/domain src/data test -name '*.java')
+ *   java -cp out domain.logic.SolverBenchmark [size ...]
+ *
+ * The sizes are the number of rows and columns of the boards, 6, 10 and 20 if none is passed. For every board class
+ * and backend the mean and the highest time of a solve are printed, with the number of solves that reached
+ * {@link #TIMEOUT_MILLIS}.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class SolverBenchmark {
+
+    /**
+     * Time a backend may spend on a problem, in milliseconds
+     */
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Sizes of the boards when none is passed
+     */
+    private static final int[] DEFAULT_SIZES = {6, 10, 20};
+
+    /**
+     * Difficulties of the generated problems
+     */
+    private static final Difficulty[] DIFFICULTIES = {Difficulty.Easy, Difficulty.Hard, Difficulty.Insane};
+
+    /**
+     * Seeds of the generated problems, one problem per seed and difficulty
+     */
+    private static final long[] SEEDS = {1, 2, 3};
+
+    /**
+     * Runs the benchmark
+     * @param args The sizes of the boards
+     */
+    public static void main(String[] args) {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+        }
+        System.out.printf("%-22s %-22s %10s %10s %9s%n", "class", "backend", "mean ms", "max ms", "timeouts");
+        for (int size : sizes) {
+            for (Type type : Type.values()) {
+                benchmark(type, size, false);
+                if (type != Type.Hexagon) benchmark(type, size, true);
+            }
+        }
+    }
+
+    /**
+     * Times every backend on the problems of a board class and prints a line per backend
+     * @param type The type of the boards
+     * @param size The number of rows and columns of the boards
+     * @param cornerAdjacent Whether fields sharing a corner are neighbours
+     */
+    private static void benchmark(Type type, int size, boolean cornerAdjacent) {
+        List<Problem> problems = new ArrayList<>();
+        for (Difficulty difficulty : DIFFICULTIES) {
+            for (long seed : SEEDS) {
+                problems.add(Generator.generate(type, size, size, difficulty, "benchmark", cornerAdjacent, seed));
+            }
+        }
+        String boardClass = type + "/" + size + "x" + size + "/" + (cornerAdjacent ? "CA" : "C");
+        for (Supplier<HidatoSolver> backend : backends()) {
+            long total = 0;
+            long max = 0;
+            int timeouts = 0;
+            String name = null;
+            for (Problem problem : problems) {
+                HidatoSolver solver = backend.get();
+                name = solver.getClass().getSimpleName();
+                long start = System.nanoTime();
+                SolveResult result = solver.solve(problem, new SolveToken(TIMEOUT_MILLIS));
+                long elapsed = System.nanoTime() - start;
+                total += elapsed;
+                max = Math.max(max, elapsed);
+                if (result.isStopped()) timeouts++;
+            }
+            System.out.printf("%-22s %-22s %10.1f %10.1f %9d%n", boardClass, name,
+                    total / 1e6 / problems.size(), max / 1e6, timeouts);
+        }
+    }
+
+    /**
+     * Returns the backends that are timed. Every solve gets a new solver, so no backend reuses the work of an earlier
+     * solve.
+     * @return A creator of every backend
+     */
+    private static List<Supplier<HidatoSolver>> backends() {
+        return Arrays.asList(Solver::new, PropagationSolver::new, PortfolioSolver::new, MeetInTheMiddleSolver::new);
+    }
+}
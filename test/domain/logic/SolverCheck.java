@@ -0,0 +1,366 @@
+package domain.logic;
+
+import domain.game.Difficulty;
+import domain.game.HexagonProblem;
+import domain.game.Problem;
+import domain.game.SquareProblem;
+import domain.game.TriangleProblem;
+import domain.game.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SolverCheck runs every {@link HidatoSolver} backend on a set of known problems and checks that they agree: a
+ * problem with a solution is solved with a valid path, a problem without one is reported as such, and
+ * {@link HidatoSolver#countSolutions(Problem, int)} with a limit of 2 tells problems with a unique solution apart from
+ * problems with several. The expected number of solutions of every problem is counted by a plain enumeration of all
+ * the paths, which only works on small boards but shares no code with the solvers.
+ *
+ * It also checks that the problems made by the {@link Generator} have a unique solution and that generating with the
+ * same parameters and seed gives the same problem.
+ *
+ * Run it from the root of the project with:
+ *
+ *   javac -d out $(find src/domain src/data test -name '*.java')
+ *   java -cp out domain.logic.SolverCheck
+ *
+ * Every failed check is printed, and the exit status is 1 if any failed.
+ *
+ * @author Sergi Serrano Casalins
+ * @author Samuel Hoenle
+ */
+public class SolverCheck {
+
+    /**
+     * Time a backend may spend on a problem before the check fails, in milliseconds
+     */
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Seeds of the generated problems
+     */
+    private static final long[] SEEDS = {1, 2, 3};
+
+    /**
+     * Number of checks done
+     */
+    private static int checks;
+
+    /**
+     * Number of checks failed
+     */
+    private static int failures;
+
+    /**
+     * Runs all the checks
+     * @param args Not used
+     */
+    public static void main(String[] args) {
+        List<Problem> problems = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Integer> expected = new ArrayList<>();
+
+        add(problems, names, expected, "square unique", square(false,
+                "1,?,3",
+                "?,?,?",
+                "7,?,9"), 1);
+        add(problems, names, expected, "square unsolvable", square(false,
+                "1,?,?",
+                "?,?,?",
+                "?,?,2"), 0);
+        add(problems, names, expected, "square parity", square(false,
+                "1,?,?",
+                "?,?,?",
+                "?,?,8"), 0);
+        add(problems, names, expected, "square several", square(false,
+                "1,?,?",
+                "?,?,?",
+                "?,?,9"), 2);
+        add(problems, names, expected, "square corner adjacent", square(true,
+                "#,1,?,#",
+                "?,?,?,?",
+                "7,?,9,#"), -1);
+        add(problems, names, expected, "square hole", square(false,
+                "1,?,?,?",
+                "?,#,#,?",
+                "?,?,?,6"), 2);
+        add(problems, names, expected, "triangle unique", triangle(false,
+                "1,?,?,?",
+                "10,?,?,?",
+                "?,?,?,?"), 1);
+        add(problems, names, expected, "triangle several", triangle(false,
+                "1,?,?,?",
+                "?,?,?,?",
+                "?,8,?,?"), 2);
+        add(problems, names, expected, "triangle corner adjacent", triangle(true,
+                "1,?,?",
+                "?,?,?",
+                "?,?,9"), -1);
+        add(problems, names, expected, "triangle unsolvable", triangle(false,
+                "1,?,?,?",
+                "?,?,?,?",
+                "?,?,?,2"), 0);
+        add(problems, names, expected, "triangle single number", triangle(false,
+                "*,1",
+                "*,#"), 1);
+        add(problems, names, expected, "square no start", square(false,
+                "?,#,?",
+                "#,#,#",
+                "?,#,3"), 0);
+        add(problems, names, expected, "hexagon open", hexagon(
+                "1,?,?,?",
+                "?,?,?,?",
+                "?,?,?,?",
+                "?,?,?,16"), -1);
+        add(problems, names, expected, "hexagon unsolvable", hexagon(
+                "1,?,?,?",
+                "?,?,?,?",
+                "?,?,?,?",
+                "?,?,?,2"), 0);
+        for (Type type : Type.values()) {
+            for (long seed : SEEDS) {
+                Problem problem = Generator.generate(type, 5, 5, Difficulty.Medium, "check", seed % 2 == 0, seed);
+                add(problems, names, expected, "generated " + type + " " + seed, problem, 1);
+            }
+        }
+
+        for (int i = 0; i < problems.size(); i++) {
+            checkBackends(names.get(i), problems.get(i), expected.get(i));
+        }
+        checkSeeds();
+
+        System.out.println(checks + " checks, " + failures + " failed");
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * Adds a problem to the checked ones
+     * @param problems The problems
+     * @param names The names of the problems
+     * @param expected The expected number of solutions of every problem, at most 2
+     * @param name The name of the problem
+     * @param problem The problem
+     * @param solutions The number of solutions it is known to have, at most 2, or -1 if it is only counted
+     */
+    private static void add(List<Problem> problems, List<String> names, List<Integer> expected, String name,
+                            Problem problem, int solutions) {
+        int counted = countPaths(CellGraph.compile(problem), 2);
+        if (solutions >= 0) check(counted == solutions, name + ": enumeration found " + counted + " solutions");
+        problems.add(problem);
+        names.add(name);
+        expected.add(counted);
+    }
+
+    /**
+     * Checks every backend on a problem
+     * @param name The name of the problem
+     * @param problem The problem
+     * @param expected The number of solutions of the problem, at most 2
+     */
+    private static void checkBackends(String name, Problem problem, int expected) {
+        String[][] first = null;
+        for (HidatoSolver solver : backends()) {
+            String backend = name + " [" + nameOf(solver) + "]";
+            SolveResult result = solver.solve(problem, new SolveToken(TIMEOUT_MILLIS));
+            check(!result.isStopped(), backend + ": stopped with " + result.getStatus());
+            if (result.isStopped()) continue;
+            check(result.isSolved() == (expected > 0), backend + ": " + result.getStatus() + " with " + expected
+                    + " solutions");
+            if (result.isSolved()) {
+                check(isSolution(problem, result.getSolution()), backend + ": invalid solution "
+                        + Arrays.deepToString(result.getSolution()));
+                if (expected == 1 && first != null) {
+                    check(Arrays.deepEquals(first, result.getSolution()), backend + ": another solution of a "
+                            + "problem with a single one");
+                }
+                if (first == null) first = result.getSolution();
+            }
+            int count = solver.countSolutions(problem, 2);
+            check(count == expected, backend + ": counted " + count + " solutions instead of " + expected);
+            count = solver.countSolutions(problem, 2, new SolveToken(TIMEOUT_MILLIS));
+            check(count == expected, backend + ": counted " + count + " solutions with a token instead of "
+                    + expected);
+        }
+    }
+
+    /**
+     * Checks that the {@link Generator} gives the same problem for the same parameters and seed
+     */
+    private static void checkSeeds() {
+        for (Type type : Type.values()) {
+            for (long seed : SEEDS) {
+                Problem a = Generator.generate(type, 8, 8, Difficulty.Hard, "check", seed % 2 == 1, seed);
+                Problem b = Generator.generate(type, 8, 8, Difficulty.Hard, "check", seed % 2 == 1, seed);
+                String name = "seed " + seed + " " + type;
+                check(Arrays.deepEquals(a.getMap(), b.getMap()), name + ": different maps");
+                check(a.getDifficulty() == b.getDifficulty(), name + ": different difficulties");
+                check(a.getId() == b.getId(), name + ": different ids");
+            }
+        }
+    }
+
+    /**
+     * Creates one of every backend
+     * @return The backends
+     */
+    private static List<HidatoSolver> backends() {
+        List<HidatoSolver> backends = new ArrayList<>();
+        backends.add(new Solver());
+        backends.add(new Solver(2));
+        backends.add(new PropagationSolver());
+        backends.add(new PortfolioSolver());
+        backends.add(new MeetInTheMiddleSolver());
+        return backends;
+    }
+
+    /**
+     * Returns the name of a backend
+     * @param solver The backend
+     * @return The name of its class, followed by the number of threads for the {@link Solver}
+     */
+    private static String nameOf(HidatoSolver solver) {
+        String name = solver.getClass().getSimpleName();
+        if (solver instanceof Solver) name += " x" + ((Solver) solver).getParallelism();
+        return name;
+    }
+
+    /**
+     * Checks whether a map is a solution of a problem: the given numbers are kept and every number from 1 to the
+     * highest one is in a single cell next to the cell of the number after it
+     * @param problem The problem
+     * @param solution The solved map
+     * @return true if the map solves the problem
+     */
+    private static boolean isSolution(Problem problem, String[][] solution) {
+        CellGraph graph = CellGraph.compile(problem);
+        int[] given = graph.getValues();
+        int[] values = CellGraph.compile(solution, graph.getType(), graph.isCornerAdjacent()).getValues();
+        if (values.length != given.length) return false;
+        int max = 0;
+        for (int value : given) max = Math.max(max, value);
+        int[] cellOf = new int[max + 1];
+        Arrays.fill(cellOf, -1);
+        for (int cell = 0; cell < values.length; cell++) {
+            if (given[cell] != CellGraph.FREE && given[cell] != values[cell]) return false;
+            if (values[cell] <= 0) continue;
+            if (values[cell] > max || cellOf[values[cell]] >= 0) return false;
+            cellOf[values[cell]] = cell;
+        }
+        for (int n = 1; n <= max; n++) {
+            if (cellOf[n] < 0) return false;
+            if (n > 1 && !graph.areNeighbours(cellOf[n - 1], cellOf[n])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Counts the solutions of a problem by trying every path from every cell that can hold the number 1
+     * @param graph The graph of the problem
+     * @param limit Number of solutions after which the count stops
+     * @return The number of solutions, at most limit
+     */
+    private static int countPaths(CellGraph graph, int limit) {
+        int[] values = graph.getValues();
+        int max = 0;
+        for (int value : values) max = Math.max(max, value);
+        if (max == 0) return 0;
+        int[] cellOf = new int[max + 1];
+        Arrays.fill(cellOf, -1);
+        for (int cell = 0; cell < values.length; cell++) {
+            if (values[cell] > 0) cellOf[values[cell]] = cell;
+        }
+        boolean[] used = new boolean[values.length];
+        int count = 0;
+        for (int cell = 0; cell < values.length && count < limit; cell++) {
+            if (cellOf[1] >= 0 ? cell != cellOf[1] : values[cell] != CellGraph.FREE) continue;
+            used[cell] = true;
+            count += extend(graph, values, cellOf, used, cell, 1, max, limit - count);
+            used[cell] = false;
+        }
+        return count;
+    }
+
+    /**
+     * Counts the ways a path can be finished
+     * @param graph The graph of the problem
+     * @param values The values of the cells of the problem
+     * @param cellOf The cell of every given number, -1 for the others
+     * @param used Whether every cell is on the path
+     * @param cell The cell of the last number of the path
+     * @param n The last number of the path
+     * @param max The highest number
+     * @param limit Number of solutions after which the count stops
+     * @return The number of ways, at most limit
+     */
+    private static int extend(CellGraph graph, int[] values, int[] cellOf, boolean[] used, int cell, int n, int max,
+                              int limit) {
+        if (n == max) return 1;
+        int count = 0;
+        for (int next = 0; next < values.length && count < limit; next++) {
+            if (used[next] || !graph.areNeighbours(cell, next)) continue;
+            if (cellOf[n + 1] >= 0 ? next != cellOf[n + 1] : values[next] != CellGraph.FREE) continue;
+            used[next] = true;
+            count += extend(graph, values, cellOf, used, next, n + 1, max, limit - count);
+            used[next] = false;
+        }
+        return count;
+    }
+
+    /**
+     * Records the outcome of a check, printing it if it failed
+     * @param passed Whether the check passed
+     * @param message What failed
+     */
+    private static void check(boolean passed, String message) {
+        checks++;
+        if (!passed) {
+            failures++;
+            System.out.println("FAILED " + message);
+        }
+    }
+
+    /**
+     * Builds a square problem
+     * @param cornerAdjacent Whether fields sharing a corner are neighbours
+     * @param rows The rows of the map, with the fields separated by ","
+     * @return The problem
+     */
+    private static Problem square(boolean cornerAdjacent, String... rows) {
+        String[][] map = parse(rows);
+        return new SquareProblem(map, map.length, map[0].length, Difficulty.Medium, "check", cornerAdjacent);
+    }
+
+    /**
+     * Builds a triangle problem
+     * @param cornerAdjacent Whether fields sharing a corner are neighbours
+     * @param rows The rows of the map, with the fields separated by ","
+     * @return The problem
+     */
+    private static Problem triangle(boolean cornerAdjacent, String... rows) {
+        String[][] map = parse(rows);
+        return new TriangleProblem(map, map.length, map[0].length, Difficulty.Medium, "check", cornerAdjacent);
+    }
+
+    /**
+     * Builds a hexagon problem
+     * @param rows The rows of the map, with the fields separated by ","
+     * @return The problem
+     */
+    private static Problem hexagon(String... rows) {
+        String[][] map = parse(rows);
+        return new HexagonProblem(map, map.length, map[0].length, Difficulty.Medium, "check");
+    }
+
+    /**
+     * Splits the rows of a map into fields
+     * @param rows The rows, with the fields separated by ","
+     * @return The map
+     */
+    private static String[][] parse(String... rows) {
+        String[][] map = new String[rows.length][];
+        for (int i = 0; i < rows.length; i++) map[i] = rows[i].split(",");
+        return map;
+    }
+}